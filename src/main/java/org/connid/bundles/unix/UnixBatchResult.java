@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * The outcome of one object of a batch, either the uid of the object or the error the single operation would have
+ * thrown. A batch that timed out or broke off leaves the objects it had not reported yet unknown, the host may have
+ * created them or still be creating them.
+ */
+public class UnixBatchResult {
+
+	private final String name;
+
+	private final Uid uid;
+
+	private final ConnectorException error;
+
+	private final boolean unknown;
+
+	private UnixBatchResult(final String name, final Uid uid, final ConnectorException error,
+			final boolean unknown) {
+		this.name = name;
+		this.uid = uid;
+		this.error = error;
+		this.unknown = unknown;
+	}
+
+	public static UnixBatchResult success(final Uid uid) {
+		return new UnixBatchResult(uid.getUidValue(), uid, null, false);
+	}
+
+	public static UnixBatchResult failure(final String name, final ConnectorException error) {
+		return new UnixBatchResult(name, null, error, false);
+	}
+
+	/**
+	 * @param error why the outcome is not known, like the timeout of the batch
+	 */
+	public static UnixBatchResult unknown(final String name, final ConnectorException error) {
+		return new UnixBatchResult(name, null, error, true);
+	}
+
+	/**
+	 * @return the name of the object, null if the attributes had none
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the uid of the object, null if it failed
+	 */
+	public Uid getUid() {
+		return uid;
+	}
+
+	/**
+	 * @return why the object failed, null if it succeeded
+	 */
+	public ConnectorException getError() {
+		return error;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * @return whether the object may or may not have been written, it has to be read to know
+	 */
+	public boolean isUnknown() {
+		return unknown;
+	}
+
+	@Override
+	public String toString() {
+		if (isSuccess()) {
+			return name + ": succeeded";
+		}
+		return name + (unknown ? ": unknown, " : ": ") + error.getMessage();
+	}
+}
@@ -50,6 +50,22 @@ public class UnixConfiguration extends AbstractConfiguration {
     private long readTimeout = 10000;
     
     private long timeToWait = 100;
+
+    private boolean bulkEnrichment = false;
+
+    private int sessionPoolSize = 4;
+
+    private long sessionIdleTimeout = 300000;
+
+    private boolean persistentShell = false;
+
+    private long snapshotCacheTtl = 0;
+
+    private int enrichmentParallelism = 1;
+
+    private int batchSize = 100;
+
+    private int maxWritesInFlight = 4;
     
 
     
@@ -227,6 +243,86 @@ public class UnixConfiguration extends AbstractConfiguration {
 	this.timeToWait = timeToWait;
 }
 
+    @ConfigurationProperty(displayMessageKey = "unix.bulkenrichment.display",
+            helpMessageKey = "unix.bulkenrichment.help", order = 15)
+    public boolean isBulkEnrichment() {
+        return bulkEnrichment;
+    }
+
+    public void setBulkEnrichment(boolean bulkEnrichment) {
+        this.bulkEnrichment = bulkEnrichment;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.sessionpoolsize.display",
+            helpMessageKey = "unix.sessionpoolsize.help", order = 16)
+    public int getSessionPoolSize() {
+        return sessionPoolSize;
+    }
+
+    public void setSessionPoolSize(int sessionPoolSize) {
+        this.sessionPoolSize = sessionPoolSize;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.sessionidletimeout.display",
+            helpMessageKey = "unix.sessionidletimeout.help", order = 17)
+    public long getSessionIdleTimeout() {
+        return sessionIdleTimeout;
+    }
+
+    public void setSessionIdleTimeout(long sessionIdleTimeout) {
+        this.sessionIdleTimeout = sessionIdleTimeout;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.persistentshell.display",
+            helpMessageKey = "unix.persistentshell.help", order = 18)
+    public boolean isPersistentShell() {
+        return persistentShell;
+    }
+
+    public void setPersistentShell(boolean persistentShell) {
+        this.persistentShell = persistentShell;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.snapshotcachettl.display",
+            helpMessageKey = "unix.snapshotcachettl.help", order = 19)
+    public long getSnapshotCacheTtl() {
+        return snapshotCacheTtl;
+    }
+
+    public void setSnapshotCacheTtl(long snapshotCacheTtl) {
+        this.snapshotCacheTtl = snapshotCacheTtl;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.enrichmentparallelism.display",
+            helpMessageKey = "unix.enrichmentparallelism.help", order = 20)
+    public int getEnrichmentParallelism() {
+        return enrichmentParallelism;
+    }
+
+    public void setEnrichmentParallelism(int enrichmentParallelism) {
+        this.enrichmentParallelism = enrichmentParallelism;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.batchsize.display",
+            helpMessageKey = "unix.batchsize.help", order = 21)
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @ConfigurationProperty(displayMessageKey = "unix.maxwritesinflight.display",
+            helpMessageKey = "unix.maxwritesinflight.help", order = 22)
+    public int getMaxWritesInFlight() {
+        return maxWritesInFlight;
+    }
+
+    public void setMaxWritesInFlight(int maxWritesInFlight) {
+        this.maxWritesInFlight = maxWritesInFlight;
+    }
+
     @Override
     public final void validate() {
         if (StringUtil.isBlank(admin)) {
@@ -273,6 +369,18 @@ public class UnixConfiguration extends AbstractConfiguration {
         if ((!root) && (StringUtil.isBlank(sudoPassword.toString()))) {
             throw new ConfigurationException("Unix connector needs sudo password or root password");
         }
+        if (sessionPoolSize < 1) {
+            throw new ConfigurationException("Unix session pool size must be at least 1");
+        }
+        if (enrichmentParallelism < 1) {
+            throw new ConfigurationException("Unix enrichment parallelism must be at least 1");
+        }
+        if (batchSize < 1) {
+            throw new ConfigurationException("Unix batch size must be at least 1");
+        }
+        if (maxWritesInFlight < 1) {
+            throw new ConfigurationException("Unix max writes in flight must be at least 1");
+        }
     }
     
     @Override
@@ -292,7 +400,7 @@ public class UnixConfiguration extends AbstractConfiguration {
     
     @Override
     public int hashCode() {
-    	int result = super.hashCode();
+    	int result = 17;
         result = 31 * result + (admin != null ? admin.hashCode() : 0);
         result = 31 * result + (hostname != null ? hostname.hashCode() : 0);
         result = 31 * result + (password != null ? password.hashCode() : 0);
@@ -16,25 +16,23 @@
 package org.connid.bundles.unix;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
+import org.connid.bundles.unix.commands.General;
+import org.connid.bundles.unix.sshmanagement.LineHandler;
+import org.connid.bundles.unix.sshmanagement.ReadOutputExecutor;
 import org.connid.bundles.unix.sshmanagement.ReadOutputThread;
+import org.connid.bundles.unix.sshmanagement.SessionPool;
+import org.connid.bundles.unix.sshmanagement.ShellChannel;
 import org.connid.bundles.unix.utilities.Constants;
-import org.connid.bundles.unix.utilities.Utilities;
-import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConfigurationException;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
-import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
 
 import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSch;
@@ -45,15 +43,16 @@ public class UnixConnection {
 
 	private static final Log LOG = Log.getLog(UnixConnection.class);
 
-	private UnixConfiguration unixConfiguration = null;
-
-	// private ChannelExec execChannel;
+	/**
+	 * What sudo says on a host with "Defaults requiretty" when the command has no terminal.
+	 */
+	private static final String SUDO_REQUIRES_TTY = "you must have a tty to run sudo";
 
-	private InputStream fromServer;
+	private UnixConfiguration unixConfiguration = null;
 
-	private InputStream errorStream;
+	private SessionPool sessionPool;
 
-	private Session session;
+	private ShellChannel shellChannel;
 
 	public boolean checkAlive(UnixConfiguration unixConfiguration) {
 
@@ -61,131 +60,183 @@ public class UnixConnection {
 			return false;
 		}
 
-		if (session == null) {
+		if (sessionPool == null) {
 			return false;
 		}
 
-		return session.isConnected();
+		Session session = null;
+		try {
+			session = sessionPool.borrow();
+			return session.isConnected();
+		} catch (RuntimeException e) {
+			LOG.ok("Connection check failed: {0}", e.getMessage());
+			return false;
+		} finally {
+			sessionPool.giveBack(session);
+		}
 	}
 
 	public UnixConnection(final UnixConfiguration unixConfiguration) throws IOException, JSchException {
 		this.unixConfiguration = unixConfiguration;
-		initSession(unixConfiguration);
+		sessionPool = SessionPool.acquire(unixConfiguration);
+		try {
+			sessionPool.giveBack(sessionPool.borrow());
+		} catch (RuntimeException e) {
+			disconnect();
+			throw e;
+		}
 	}
-	
-	public UnixResult execute(final String command) throws JSchException, IOException {
-		return executeInternal(command, false);
+
+	public UnixConfiguration getUnixConfiguration() {
+		return unixConfiguration;
 	}
 
-	public UnixResult executeRead(String command) throws JSchException, IOException {
-		return executeInternal(command, true);
+	public UnixResult execute(final String command) throws JSchException, IOException {
+		return executeInternal(command, false, null, null, unixConfiguration.getReadTimeout(), null);
 	}
 
-	public UnixResult execute(final String command, final String password)
-			throws JSchException, IOException, java.net.ConnectException {
-		Session session = getInitializedSession();
-		if (session == null || !session.isConnected()) {
-			session = initSession(unixConfiguration);
-		}
-		ChannelExec execChannel = null;
-		try {
-			execChannel = createExecChannel(session, command);
+	/**
+	 * Waits up to the timeout for the command to finish instead of the read timeout, for scripts running the
+	 * commands of many objects.
+	 */
+	public UnixResult execute(final String command, final long timeout) throws JSchException, IOException {
+		return executeInternal(command, false, null, null, timeout, null);
+	}
 
-			return setPassword(execChannel, command, password);
-		} finally {
-			disconnectExecChannel(execChannel);
-		}
+	public UnixResult executeRead(String command) throws JSchException, IOException {
+		return executeInternal(command, true, null, null, unixConfiguration.getReadTimeout(), null);
+	}
 
+	/**
+	 * Hands the output to the line handler while it arrives, the result carries no output then. Through the
+	 * persistent shell the output is read completely before the lines are handed over.
+	 */
+	public UnixResult executeRead(final String command, final LineHandler lineHandler)
+			throws JSchException, IOException {
+		return executeInternal(command, true, null, lineHandler, unixConfiguration.getReadTimeout(), null);
 	}
 
-	private Session initSession(final UnixConfiguration unixConfiguration) {
-		LOG.ok("Session initialization started");
-		JSch jSch = new JSch();
-		try {
-			session = jSch.getSession(unixConfiguration.getAdmin(), unixConfiguration.getHostname(),
-					unixConfiguration.getPort());
-		} catch (JSchException ex) {
-			throw new ConfigurationException(ex.getMessage(), ex);
+	/**
+	 * Writes the input to the standard input of the command at once, there is no prompt to wait for. The command
+	 * gets a channel of its own. With the pty setting it runs on a terminal with echo turned off, see
+	 * {@link TerminalInput}, otherwise the input is written right away and closing it ends the command.
+	 */
+	public UnixResult executeWithInput(final String command, final String input) throws JSchException, IOException {
+		UnixResult result;
+		if (unixConfiguration.isUsePty()) {
+			TerminalInput terminalInput = new TerminalInput(input);
+			UnixResult status = executeInternal(General.terminalInput(command), false, null, terminalInput,
+					unixConfiguration.getReadTimeout(), terminalInput);
+			result = new UnixResult(status.getExitStatus(), terminalInput.getOutput(), terminalInput.getOutput());
+		} else {
+			result = executeInternal(command, false, input, null, unixConfiguration.getReadTimeout(), null);
 		}
-		session.setPassword(Utilities.getPlainPassword(unixConfiguration.getPassword()));
-		session.setConfig(Constants.STRICT_HOST_KEY_CHECKING, "no");
-		try {
-			session.connect(unixConfiguration.getSshConnectionTimeout());
-		} catch (JSchException ex) {
-			throw new ConnectionBrokenException(ex.getMessage(), ex);
+		if (result.getOutput().contains(SUDO_REQUIRES_TTY)) {
+			String message = "sudo on " + unixConfiguration.getHostname()
+					+ " requires a tty, which commands reading passwords from their standard input only get with"
+					+ " the pty setting. Turn it on or allow the admin to run sudo without one, like with"
+					+ " \"Defaults:" + unixConfiguration.getAdmin() + " !requiretty\" in sudoers";
+			LOG.error(message);
+			throw new ConfigurationException(message);
 		}
-		LOG.ok("Session initialization finished {0}", session.isConnected());
-		return session;
+		return result;
 	}
 
-	private ChannelExec createExecChannel(Session session, String command) throws JSchException, IOException {
+	private ChannelExec createExecChannel(Session session, boolean usePty) throws JSchException {
 		LOG.ok("Trying to open exec channel");
 		ChannelExec execChannel = (ChannelExec) session.openChannel("exec");
-		fromServer = execChannel.getInputStream();
-		errorStream = execChannel.getErrStream();
-		execChannel.setPty(unixConfiguration.isUsePty());
+		execChannel.setPty(usePty);
 		LOG.ok("Exec channel opened");
 		return execChannel;
 	}
 
-	private Session getInitializedSession() {
-		if (session == null || !session.isConnected()) {
-			session = initSession(unixConfiguration);
+	/**
+	 * Runs the command on a pooled session. If the channel can not be opened the session is most likely broken, so
+	 * it is dropped from the pool and the command is tried once more on another one.
+	 */
+	private UnixResult executeInternal(final String command, boolean isRead, String input,
+			LineHandler lineHandler, long timeout, TerminalInput terminalInput) throws JSchException, IOException {
+		if (input == null && terminalInput == null && unixConfiguration.isPersistentShell()) {
+			UnixResult result = getShellChannel().execute(command, isRead, timeout);
+			if (lineHandler != null) {
+				for (String line : result.getOutput().split("\n")) {
+					if (!lineHandler.handle(line)) {
+						break;
+					}
+				}
+			}
+			return result;
 		}
-		return session;
-	}
-	
-	private UnixResult executeInternal(final String command, boolean isRead)
-			throws JSchException, IOException {
-		Session session = getInitializedSession();
-
-		LOG.ok("Executing on: {0}", session.getHost());
-		LOG.ok("Configurations: timeout({0}), readTimout({1}), timeToWait({2})",
-				unixConfiguration.getSshConnectionTimeout(), unixConfiguration.getReadTimeout(),
-				unixConfiguration.getTimeToWait());
 
-		ChannelExec execChannel = null;
-		try {
-			execChannel = createExecChannel(session, command);
-			return executeInternal(execChannel, command, isRead);
-		} finally {
-			disconnectExecChannel(execChannel);
+		for (int attempt = 1;; attempt++) {
+			Session session = sessionPool.borrow();
+
+			LOG.ok("Executing on: {0}", session.getHost());
+			LOG.ok("Configurations: timeout({0}), readTimout({1}), timeToWait({2})",
+					unixConfiguration.getSshConnectionTimeout(), unixConfiguration.getReadTimeout(),
+					unixConfiguration.getTimeToWait());
+
+			ChannelExec execChannel = null;
+			boolean broken = false;
+			try {
+				ReadOutputThread readOutputThread;
+				try {
+					execChannel = createExecChannel(session,
+							terminalInput != null || (input == null && unixConfiguration.isUsePty()));
+					readOutputThread = connectExecChannel(execChannel, command, isRead, lineHandler);
+				} catch (JSchException ex) {
+					broken = true;
+					if (attempt < 2) {
+						LOG.ok("Retrying open channel: {0}", ex.getMessage());
+						continue;
+					}
+					throw new ConnectionBrokenException(ex.getMessage(), ex);
+				}
+				if (input != null) {
+					writeInput(execChannel, input);
+				}
+				if (terminalInput != null) {
+					terminalInput.connected(execChannel.getOutputStream());
+				}
+				LOG.ok("Reading output");
+				return lineHandler == null ? readOutput(readOutputThread, timeout)
+						: streamOutput(readOutputThread, timeout);
+			} finally {
+				disconnectExecChannel(execChannel);
+				if (broken) {
+					sessionPool.invalidate(session);
+				} else {
+					sessionPool.giveBack(session);
+				}
+			}
 		}
-
 	}
 
-	private UnixResult executeInternal(ChannelExec execChannel, String command, boolean isRead)
-			throws IOException {
-		try {
-			LOG.ok("Command to execute: " + command);
-			execChannel.setCommand(command);
-			execChannel.connect(unixConfiguration.getSshConnectionTimeout());
-		} catch (JSchException ex) {
-			execChannel = retryOpenChannel(command);
+	/**
+	 * Opens the shell on its own session on first use and again after it broke or timed out.
+	 */
+	private synchronized ShellChannel getShellChannel() throws IOException {
+		if (shellChannel == null || !shellChannel.isOpen()) {
+			Session session = sessionPool.openDedicatedSession();
+			try {
+				shellChannel = new ShellChannel(session, unixConfiguration.getSshConnectionTimeout());
+			} catch (JSchException ex) {
+				session.disconnect();
+				throw new ConnectionBrokenException(ex.getMessage(), ex);
+			}
 		}
-		LOG.ok("Reading output");
-		return readOutput(new ReadOutputThread(fromServer, errorStream, execChannel, isRead));
+		return shellChannel;
 	}
 
-	private ChannelExec retryOpenChannel(String command) throws IOException {
-		Session session = getInitializedSession();
-
-		LOG.ok("Retrying open channel on: {0}", session.getHost());
-		LOG.ok("Configurations: timeout({0}), readTimout({1}), timeToWait({2})",
-				unixConfiguration.getSshConnectionTimeout(), unixConfiguration.getReadTimeout(),
-				unixConfiguration.getTimeToWait());
-
-		ChannelExec execChannel = null;
-		try {
-			execChannel = createExecChannel(session, command);
-			LOG.ok("Command to execute: " + command);
-			execChannel.setCommand(command);
-			execChannel.connect(unixConfiguration.getSshConnectionTimeout());
-		} catch (JSchException ex) {
-			disconnectExecChannel(execChannel);
-			throw new ConnectionBrokenException(ex.getMessage(), ex);
-		}
-		return execChannel;
+	private ReadOutputThread connectExecChannel(ChannelExec execChannel, String command, boolean isRead,
+			LineHandler lineHandler) throws JSchException, IOException {
+		LOG.ok("Command to execute: {0}", command);
+		execChannel.setCommand(command);
+		// the streams have to be requested before the channel is connected, otherwise early output is lost
+		ReadOutputThread readOutputThread = new ReadOutputThread(execChannel.getInputStream(),
+				execChannel.getErrStream(), execChannel, isRead, lineHandler);
+		execChannel.connect(unixConfiguration.getSshConnectionTimeout());
+		return readOutputThread;
 	}
 
 	private void disconnectExecChannel(ChannelExec execChannel) {
@@ -196,94 +247,131 @@ public class UnixConnection {
 		LOG.ok("Disconnecting execChannel");
 	}
 
-	private UnixResult setPassword(ChannelExec execChannel, String command, String password)
-			throws IOException {
-		LOG.ok("Command to execute: " + command);
-		execChannel.setCommand(command);
-		execChannel.setPty(unixConfiguration.isUsePty());
-		try {
-			execChannel.connect(unixConfiguration.getSshConnectionTimeout());
-		} catch (JSchException ex) {
-			execChannel = retryOpenChannel(command);
-		}
-		sleep(unixConfiguration.getTimeToWait());
-
+	private void writeInput(ChannelExec execChannel, String input) throws IOException {
 		OutputStream out = execChannel.getOutputStream();
-		if (StringUtil.isNotBlank(password)) {
-			out.write((password + "\n").getBytes());
-			out.flush();
-			sleep(unixConfiguration.getTimeToWait());
-
-			out.write((password + "\n").getBytes());
-			out.flush();
-			sleep(unixConfiguration.getTimeToWait());
-
-		}
-		return readOutput(new ReadOutputThread(fromServer, errorStream, execChannel, false));
+		out.write(input.getBytes("UTF-8"));
+		out.flush();
+		out.close();
 	}
 
-	private UnixResult readOutput(Callable<UnixResult> readThread) throws IOException {
-
-		ExecutorService executor = Executors.newSingleThreadExecutor();
-		Future<UnixResult> future = executor.submit(readThread);
-
-		UnixResult result = null;
-
-		try {
-			result = future.get(unixConfiguration.getReadTimeout(), TimeUnit.MILLISECONDS);
-		} catch (InterruptedException ex) {
-			throw new OperationTimeoutException(ex);
-		} catch (ExecutionException ex) {
-			throw new OperationTimeoutException(ex);
-		} catch (TimeoutException ex) {
-			throw new OperationTimeoutException(ex);
-		}
-
-		executor.shutdownNow();
-		return result;
-
+	private UnixResult readOutput(Callable<UnixResult> readThread, long timeout) throws IOException {
+		return ReadOutputExecutor.read(readThread, timeout);
 	}
 
-	private void sleep(final long timeout) {
+	private UnixResult streamOutput(ReadOutputThread readOutputThread, long timeout) throws IOException {
 		try {
-			Thread.sleep(timeout);
-		} catch (Exception ee) {
-			LOG.info("Failed to sleep between reads with pollTimeout: " + 1000, ee);
+			return readOutputThread.stream(timeout);
+		} catch (IOException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectionBrokenException(e);
+		} catch (Exception e) {
+			throw new ConnectorException(e.getMessage(), e);
 		}
 	}
 
 	public void testConnection() throws Exception {
-		Session session = getInitializedSession();
-		if (session == null || !session.isConnected()) {
-			session = initSession(unixConfiguration);
+		Session session = sessionPool.borrow();
+		try {
+			session.sendKeepAliveMsg();
+		} finally {
+			sessionPool.giveBack(session);
 		}
-
-		session.sendKeepAliveMsg();
 	}
 
+	/**
+	 * Logs in as the given user on a separate session, the pooled admin sessions are left untouched.
+	 */
 	public void authenticate(final String username, final String password) throws JSchException, IOException {
 		JSch jSch = new JSch();
-		session.disconnect();
+		Session session;
 		try {
 			session = jSch.getSession(username, unixConfiguration.getHostname(), unixConfiguration.getPort());
 		} catch (JSchException ex) {
 			throw new ConfigurationException(ex.getMessage(), ex);
 		}
 		session.setPassword(password);
-		session.setConfig("StrictHostKeyChecking", "no");
-		session.connect(unixConfiguration.getSshConnectionTimeout());
-		session.disconnect();
+		session.setConfig(Constants.STRICT_HOST_KEY_CHECKING, "no");
+		try {
+			session.connect(unixConfiguration.getSshConnectionTimeout());
+		} finally {
+			session.disconnect();
+		}
 	}
 
 	public void disconnect() {
 	
-		if (session != null && session.isConnected()) {
-			session.disconnect();
-			LOG.info("Session is disconnected.");
+		synchronized (this) {
+			if (shellChannel != null) {
+				shellChannel.close();
+				shellChannel = null;
+			}
+		}
+
+		if (sessionPool != null) {
+			SessionPool.release(sessionPool);
+			LOG.info("Session pool is released.");
 		}
 	
-		session = null;
+		sessionPool = null;
 
 	}
 
+
+	/**
+	 * Writes the input once the command tells where its standard input is, see {@link General#terminalInput}. A
+	 * terminal gets an end of file character after the input, closing the input of the channel would hang it up
+	 * before the command is done. Lines of a terminal repeating the input are dropped, in case echo could not be
+	 * turned off.
+	 */
+	private static final class TerminalInput implements LineHandler {
+
+		private static final char END_OF_FILE = '\u0004';
+
+		private final String input;
+
+		private final Set<String> inputLines;
+
+		private final StringBuilder output = new StringBuilder();
+
+		private OutputStream stdin = null;
+
+		private boolean written = false;
+
+		private boolean terminal = false;
+
+		TerminalInput(final String input) {
+			this.input = input;
+			this.inputLines = new HashSet<String>(Arrays.asList(input.split("\n")));
+		}
+
+		void connected(final OutputStream stdin) {
+			this.stdin = stdin;
+		}
+
+		@Override
+		public boolean handle(final String line) throws IOException {
+			if (!written && line.contains(Constants.SECTION_MARKER + " " + Constants.INPUT_SECTION)) {
+				written = true;
+				terminal = line.trim().endsWith(" " + Constants.TERMINAL_INPUT);
+				stdin.write((terminal ? input + END_OF_FILE : input).getBytes("UTF-8"));
+				stdin.flush();
+				if (!terminal) {
+					stdin.close();
+				}
+				return true;
+			}
+			if (!terminal || !inputLines.contains(line.trim())) {
+				output.append(line).append("\n");
+			}
+			return true;
+		}
+
+		String getOutput() {
+			return output.toString();
+		}
+	}
 }
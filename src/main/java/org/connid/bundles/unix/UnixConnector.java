@@ -19,27 +19,37 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.connid.bundles.unix.methods.UnixAuthenticate;
+import org.connid.bundles.unix.methods.UnixBatchCreate;
 import org.connid.bundles.unix.methods.UnixCreate;
 import org.connid.bundles.unix.methods.UnixDelete;
 import org.connid.bundles.unix.methods.UnixExecuteQuery;
 import org.connid.bundles.unix.methods.UnixSchema;
+import org.connid.bundles.unix.methods.UnixSync;
 import org.connid.bundles.unix.methods.UnixTest;
 import org.connid.bundles.unix.methods.UnixUpdate;
+import org.connid.bundles.unix.methods.WriteQueue;
 import org.connid.bundles.unix.search.Operand;
 import org.connid.bundles.unix.search.Operator;
 import org.connid.bundles.unix.sshmanagement.CommandGenerator;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeUtil;
 import org.identityconnectors.framework.common.objects.ConnectorObject;
 import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.ResultsHandler;
 import org.identityconnectors.framework.common.objects.Schema;
+import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncToken;
 import org.identityconnectors.framework.common.objects.Uid;
 import org.identityconnectors.framework.common.objects.filter.FilterTranslator;
 import org.identityconnectors.framework.spi.Configuration;
@@ -51,6 +61,7 @@ import org.identityconnectors.framework.spi.operations.DeleteOp;
 import org.identityconnectors.framework.spi.operations.ResolveUsernameOp;
 import org.identityconnectors.framework.spi.operations.SchemaOp;
 import org.identityconnectors.framework.spi.operations.SearchOp;
+import org.identityconnectors.framework.spi.operations.SyncOp;
 import org.identityconnectors.framework.spi.operations.TestOp;
 import org.identityconnectors.framework.spi.operations.UpdateAttributeValuesOp;
 import org.identityconnectors.framework.spi.operations.UpdateOp;
@@ -59,7 +70,7 @@ import com.jcraft.jsch.JSchException;
 
 @ConnectorClass(configurationClass = UnixConfiguration.class, displayNameKey = "unix.connector.display")
 public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, DeleteOp, TestOp,
-        SearchOp<Operand>, AuthenticateOp, SchemaOp, ResolveUsernameOp, UpdateAttributeValuesOp {
+        SearchOp<Operand>, AuthenticateOp, SchemaOp, ResolveUsernameOp, UpdateAttributeValuesOp, SyncOp {
 
     private static final Log LOG = Log.getLog(UnixConnector.class);
 
@@ -67,6 +78,8 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
 
     private UnixConnection unixConnection;
 
+    private WriteQueue writeQueue;
+
     private static CommandGenerator commandGenerator = null;
 
     @Override
@@ -88,6 +101,7 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
             LOG.error("Error in connection process", e);
             throw new ConnectorException("Error in connection process: " + e.getMessage());
         }
+        writeQueue = new WriteQueue(unixConfiguration.getMaxWritesInFlight());
 
         LOG.ok("Unix Connector initialization finished");
 
@@ -100,6 +114,10 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
     @Override
     public final void dispose() {
 
+        if (writeQueue != null) {
+            writeQueue.flush();
+            writeQueue = null;
+        }
         if (unixConnection != null) {
             unixConnection.disconnect();
             unixConnection = null;
@@ -122,6 +140,31 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
 
     @Override
     public final Uid create(final ObjectClass oc, final Set<Attribute> set, final OperationOptions oo) {
+        if (isQueued()) {
+            return await(submitCreate(oc, set, oo));
+        }
+        return doCreate(oc, set);
+    }
+
+    /**
+     * Queues the create after the writes already queued for an object of the same name, see {@link WriteQueue}.
+     */
+    public final Future<Uid> submitCreate(final ObjectClass oc, final Set<Attribute> set,
+            final OperationOptions oo) {
+        if (oc == null) {
+            throw new ConnectorException("Could not create object, no object class was specified.");
+        }
+        Name name = set == null ? null : AttributeUtil.getNameFromAttributes(set);
+        return writeQueue.submit(WriteQueue.key(oc, name == null ? null : name.getNameValue()), new Callable<Uid>() {
+
+            @Override
+            public Uid call() {
+                return doCreate(oc, set);
+            }
+        });
+    }
+
+    private Uid doCreate(final ObjectClass oc, final Set<Attribute> set) {
         LOG.info("Create OP");
         Uid uidResult = null;
         if (oc == null) {
@@ -137,8 +180,48 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
         return uidResult;
     }
 
+    /**
+     * Creates the objects with one remote script per batch of {@link UnixConfiguration#getBatchSize()} objects. The
+     * framework has no batch operation, callers holding the connector use this instead of one create per object.
+     *
+     * @return the result of every object in the order of the objects, a failed object does not stop the others
+     */
+    public final List<UnixBatchResult> createBatch(final ObjectClass oc, final List<Set<Attribute>> objects,
+            final OperationOptions oo) {
+        LOG.info("Batch create OP");
+        if (oc == null) {
+            throw new ConnectorException("Could not create objects, no object class was specified.");
+        }
+        return new UnixBatchCreate(oc, unixConnection, objects).create();
+    }
+
     @Override
     public final void delete(final ObjectClass oc, final Uid uid, final OperationOptions oo) {
+        if (isQueued()) {
+            await(submitDelete(oc, uid, oo));
+            return;
+        }
+        doDelete(oc, uid);
+    }
+
+    /**
+     * Queues the delete after the writes already queued for the object, see {@link WriteQueue}.
+     *
+     * @return the future of the Uid of the deleted object
+     */
+    public final Future<Uid> submitDelete(final ObjectClass oc, final Uid uid, final OperationOptions oo) {
+        checkObject(oc, uid);
+        return writeQueue.submit(WriteQueue.key(oc, uid.getUidValue()), new Callable<Uid>() {
+
+            @Override
+            public Uid call() {
+                doDelete(oc, uid);
+                return uid;
+            }
+        });
+    }
+
+    private void doDelete(final ObjectClass oc, final Uid uid) {
         try {
             new UnixDelete(oc, unixConnection, uid).delete();
         } catch (IOException ex) {
@@ -152,6 +235,7 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
     public final Uid authenticate(final ObjectClass oc, final String username, final GuardedString gs,
                                   final OperationOptions oo) {
         Uid uidResult = null;
+        flush();
         try {
             LOG.info("Authenticate user: " + username);
             uidResult = new UnixAuthenticate(oc, unixConnection, username, gs).authenticate();
@@ -166,6 +250,28 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
     @Override
     public final Uid update(final ObjectClass oc, final Uid uid, final Set<Attribute> set,
                             final OperationOptions oo) {
+        if (isQueued()) {
+            return await(submitUpdate(oc, uid, set, oo));
+        }
+        return doUpdate(oc, uid, set);
+    }
+
+    /**
+     * Queues the update after the writes already queued for the object, see {@link WriteQueue}.
+     */
+    public final Future<Uid> submitUpdate(final ObjectClass oc, final Uid uid, final Set<Attribute> set,
+            final OperationOptions oo) {
+        checkObject(oc, uid);
+        return writeQueue.submit(WriteQueue.key(oc, uid.getUidValue()), new Callable<Uid>() {
+
+            @Override
+            public Uid call() {
+                return doUpdate(oc, uid, set);
+            }
+        });
+    }
+
+    private Uid doUpdate(final ObjectClass oc, final Uid uid, final Set<Attribute> set) {
         try {
             if (set == null) {
                 throw new IllegalArgumentException("Attribute set is null");
@@ -190,6 +296,7 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
         }
 
         LOG.info("Execute query");
+        flush();
         try {
             new UnixExecuteQuery(unixConnection, oc, filter, oo, rh).executeQuery();
         } catch (IOException ex) {
@@ -199,6 +306,24 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
         }
     }
 
+    @Override
+    public void sync(final ObjectClass oc, final SyncToken token, final SyncResultsHandler handler,
+                     final OperationOptions oo) {
+        if (oc == null || handler == null) {
+            throw new IllegalArgumentException();
+        }
+
+        LOG.info("Sync");
+        flush();
+        new UnixSync(unixConnection, oc).sync(token, handler);
+    }
+
+    @Override
+    public SyncToken getLatestSyncToken(final ObjectClass oc) {
+        flush();
+        return new UnixSync(unixConnection, oc).getLatestSyncToken();
+    }
+
     @Override
     public final FilterTranslator<Operand> createFilterTranslator(final ObjectClass oc,
                                                                   final OperationOptions oo) {
@@ -244,8 +369,23 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
     }
 
     @Override
-    public Uid removeAttributeValues(ObjectClass objclass, Uid uid, Set<Attribute> valuesToRemove,
+    public Uid removeAttributeValues(final ObjectClass objclass, final Uid uid, final Set<Attribute> valuesToRemove,
                                      OperationOptions options) {
+        if (isQueued()) {
+            checkObject(objclass, uid);
+            return await(writeQueue.submit(WriteQueue.key(objclass, uid.getUidValue()), new Callable<Uid>() {
+
+                @Override
+                public Uid call() {
+                    return doRemoveAttributeValues(objclass, uid, valuesToRemove);
+                }
+            }));
+        }
+        return doRemoveAttributeValues(objclass, uid, valuesToRemove);
+    }
+
+    private Uid doRemoveAttributeValues(final ObjectClass objclass, final Uid uid,
+            final Set<Attribute> valuesToRemove) {
         try {
             new UnixUpdate(objclass, unixConnection, uid, valuesToRemove).removeAttributes();
         } catch (IOException ex) {
@@ -256,6 +396,47 @@ public class UnixConnector implements PoolableConnector, CreateOp, UpdateOp, Del
         return uid;
     }
 
+    /**
+     * Waits until every write queued so far has finished, reads do so before they start. Failures are left to the
+     * futures of the writes.
+     */
+    public final void flush() {
+        if (writeQueue != null) {
+            writeQueue.flush();
+        }
+    }
+
+    /**
+     * @return whether writes are queued, a write then queues behind them to keep the order of the object's writes
+     */
+    private boolean isQueued() {
+        return writeQueue != null && writeQueue.getPending() > 0;
+    }
+
+    private static void checkObject(final ObjectClass oc, final Uid uid) {
+        if (oc == null) {
+            throw new IllegalArgumentException("No object class was specified");
+        }
+        if (uid == null) {
+            throw new IllegalArgumentException("No Uid was specified");
+        }
+    }
+
+    private static Uid await(final Future<Uid> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ConnectorException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionBrokenException(e);
+        }
+    }
+
     @Override
     public void checkAlive() {
 
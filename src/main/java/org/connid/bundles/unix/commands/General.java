@@ -15,23 +15,174 @@
  */
 package org.connid.bundles.unix.commands;
 
+import java.util.List;
+
+import org.connid.bundles.unix.utilities.Constants;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 
 public class General {
 
-    public static String getentPasswdFile(OperationOptions options) {
+    /**
+     * @param filter command the rows are piped through before paging, null to read all of them
+     */
+    public static String getentPasswdFile(OperationOptions options, String filter) {
     	StringBuilder getentCommand = new StringBuilder("getent passwd");
  
+    	appendFilter(filter, getentCommand);
     	appendPaging(options, getentCommand);
         return getentCommand.toString();
     }
     
-    public static String getentGroupFile(OperationOptions options) {
+    public static String getentGroupFile(OperationOptions options, String filter) {
     	StringBuilder getentCommand = new StringBuilder("getent group");
+    	appendFilter(filter, getentCommand);
     	appendPaging(options, getentCommand);
         return getentCommand.toString();
     }
 
+    /**
+     * Reads passwd and the requested ones of shadow, group and the users' sudoers files in one go. Every part of the
+     * output is preceded by a section marker line, sudoers files are additionally preceded by a file marker line with
+     * the file name. Passwd comes last, so that its rows can be handled while they arrive.
+     */
+    public static String getentUserDetails(OperationOptions options, String filter, boolean shadow, boolean groups,
+            boolean sudoers) {
+        StringBuilder script = new StringBuilder();
+        if (shadow) {
+            appendSectionMarker(script, Constants.SHADOW_SECTION);
+            script.append("getent shadow; ");
+        }
+        if (groups) {
+            appendSectionMarker(script, Constants.GROUP_SECTION);
+            script.append("getent group; ");
+        }
+        if (sudoers) {
+            appendSectionMarker(script, Constants.SUDOERS_SECTION);
+            appendSudoersFiles(script, "*_user");
+        }
+        appendSectionMarker(script, Constants.PASSWD_SECTION);
+        script.append("{ ").append(getentPasswdFile(options, filter)).append("; } || exit $?; ");
+        script.append("exit 0");
+        return shellScript(script.toString());
+    }
+
+    /**
+     * Prints the checksums of passwd, shadow, group and the sudoers directory and, unless they are the expected ones,
+     * the content of all of them in the sections of {@link #getentUserDetails}. The files are read directly, entries
+     * only known to other name services have no file to be checksummed.
+     */
+    public static String syncSnapshot(final String expectedChecksums) {
+        StringBuilder script = new StringBuilder();
+        script.append("sums=\"$(cksum < /etc/passwd 2>/dev/null) $(cksum < /etc/shadow 2>/dev/null) ");
+        script.append("$(cksum < /etc/group 2>/dev/null) ");
+        script.append("$({ ls -1 ").append(Constants.SUDOERS_DIR).append("; cat ").append(Constants.SUDOERS_DIR)
+                .append("*; } 2>/dev/null | cksum)\"; ");
+        appendSectionMarker(script, Constants.CHECKSUMS_SECTION);
+        script.append("echo \"$sums\"; ");
+        if (expectedChecksums != null) {
+            script.append("[ \"$sums\" = \"").append(expectedChecksums).append("\" ] && exit 0; ");
+        }
+        appendSectionMarker(script, Constants.PASSWD_SECTION);
+        script.append("cat /etc/passwd; ");
+        appendSectionMarker(script, Constants.SHADOW_SECTION);
+        script.append("cat /etc/shadow; ");
+        appendSectionMarker(script, Constants.GROUP_SECTION);
+        script.append("cat /etc/group; ");
+        appendSectionMarker(script, Constants.SUDOERS_SECTION);
+        appendSudoersFiles(script, "*");
+        script.append("exit 0");
+        return shellScript(script.toString());
+    }
+
+    /**
+     * Prints the permission files of all users and groups, each one preceded by a file marker line with its name.
+     * Files of other names are left out, they are not the connector's.
+     */
+    public static String sudoersFiles() {
+        StringBuilder script = new StringBuilder();
+        appendSudoersFiles(script, "*_user");
+        appendSudoersFiles(script, "%*_group");
+        script.append("exit 0");
+        return shellScript(script.toString());
+    }
+
+    /**
+     * Runs the commands one after the other whatever their exit status. The output of every command, error output
+     * included, is framed by a begin marker with its number and an end marker with its number and exit status, see
+     * {@link org.connid.bundles.unix.files.BatchOutput}.
+     */
+    public static String batchScript(final List<String> commands) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < commands.size(); i++) {
+            appendSectionMarker(script, Constants.BEGIN_SECTION + " " + i);
+            script.append("{ ").append(commands.get(i)).append("; } 2>&1; ");
+            appendSectionMarker(script, Constants.END_SECTION + " " + i + " $?");
+        }
+        script.append("exit 0");
+        return shellScript(script.toString());
+    }
+
+    /**
+     * Runs the steps of one object in the markers of {@link #batchScript}, but stops at the first step that fails,
+     * the later ones build on it. Only the input step reads the standard input of the script, the others get none so
+     * that they can not consume the data meant for it.
+     *
+     * @param inputStep the number of the step reading the standard input, -1 if there is none
+     */
+    public static String planScript(final List<String> steps, final int inputStep) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < steps.size(); i++) {
+            appendSectionMarker(script, Constants.BEGIN_SECTION + " " + i);
+            script.append("{ ").append(steps.get(i)).append("; } ").append(i == inputStep ? "" : "</dev/null ")
+                    .append("2>&1; ");
+            script.append("s=$?; ");
+            appendSectionMarker(script, Constants.END_SECTION + " " + i + " $s");
+            script.append("[ $s -eq 0 ] || exit 0; ");
+        }
+        script.append("exit 0");
+        return shellScript(script.toString());
+    }
+
+    private static void appendSudoersFiles(final StringBuilder script, final String pattern) {
+        script.append("for f in ").append(Constants.SUDOERS_DIR).append(pattern).append("; do ");
+        script.append("[ -f \"$f\" ] || continue; ");
+        script.append("echo \"").append(Constants.SECTION_MARKER).append(" ").append(Constants.FILE_SECTION)
+                .append(" ${f##*/}\"; ");
+        script.append("cat \"$f\"; ");
+        script.append("done; ");
+    }
+
+    /**
+     * Prefixes the command with an input marker line telling whether its standard input is a terminal. On one, echo
+     * is turned off before the line, so that input written after it is not sent back.
+     */
+    public static String terminalInput(final String command) {
+        StringBuilder script = new StringBuilder();
+        script.append("if [ -t 0 ]; then stty -echo 2>/dev/null; ");
+        appendSectionMarker(script, Constants.INPUT_SECTION + " " + Constants.TERMINAL_INPUT);
+        script.append("else ");
+        appendSectionMarker(script, Constants.INPUT_SECTION);
+        script.append("fi; ");
+        return shellScript(script.append(command).toString());
+    }
+
+    /**
+     * Wraps the script so that it runs as one command, which also makes a single sudo prefix apply to all of it.
+     */
+    public static String shellScript(final String script) {
+        return "sh -c '" + script.replace("'", "'\\''") + "'";
+    }
+
+    private static void appendSectionMarker(StringBuilder script, String section) {
+        script.append("echo \"").append(Constants.SECTION_MARKER).append(" ").append(section).append("\"; ");
+    }
+
+    private static void appendFilter(String filter, StringBuilder getentCommand) {
+        if (filter != null) {
+            getentCommand.append(" | ").append(filter);
+        }
+    }
+
     private static void appendPaging(OperationOptions options, StringBuilder getentCommand){
     	if (options != null && options.getPageSize() != null) {
     		int offset = 0;
@@ -59,18 +210,15 @@ public class General {
     public static String searchUserStatusIntoShadowFile(final String username) {
         return "getent shadow " + username;
     }
+
+    public static String getentShadow() {
+        return "getent shadow";
+    }
     
     public static String searchGroupsForUser(final String username) {
         return "id -nG " + username;
     }
     
-    public static String getUserPermissions(final String username) {
-    	return "cat /etc/sudoers.d/" + username + "_user";
-    }
-    
-    public static String getGroupPermissions(final String username) {
-    	return "cat /etc/sudoers.d/%" + username + "_group";
-    }
     
     public static String mkdirSsh(final String username){
     	StringBuilder builder = new StringBuilder();
@@ -109,7 +109,8 @@ public class OptionBuilder {
 
             if (attr != null) {
 
-                if (isAdd && attr.is(Name.NAME) || attr.is(SchemaGroupAttribute.PERMISSIONS.getName())) {
+                if (isAdd && attr.is(Name.NAME) || attr.is(SchemaGroupAttribute.PERMISSIONS.getName())
+                        || attr.is(SchemaGroupAttribute.MEMBERS.getName())) {
                     continue;
                 }
 
@@ -24,6 +24,12 @@ public class Passwd {
     private static final String PASSWD_COMMAND = "passwd";
     
     private static final String REMOVE_PASSWD_COMMAND = "passwd -d";
+
+    /**
+     * chpasswd - update passwords in batch mode, reads "user:password" lines from its standard input. Its errors
+     * name the line of the user, they are written to the output to be told apart.
+     */
+    private static final String CHPASSWD_COMMAND = "chpasswd 2>&1";
     /**
      * This option is used to lock the specified account and it is available to
      * root only. The locking is performed by rendering the encrypted password
@@ -40,18 +46,10 @@ public class Passwd {
      */
     private static final String UNLOCK_ACCOUNT = "-u";
 
-    private String createChangeUserPasswordCommand(final String username,
-            final String password) {
-    	StringBuilder passwordCommand = new StringBuilder();
-    	passwordCommand.append(PASSWD_COMMAND).append(" ").append(username);
-        return passwordCommand.toString();
+    public String setPasswords() {
+        return CHPASSWD_COMMAND;
     }
 
-    public String setPassword(final String username,
-            final String password) {
-        return createChangeUserPasswordCommand(username, password);
-    }
-    
     public String resetPassword(final String username) {
         StringBuilder removePassword = new StringBuilder();
         removePassword.append(REMOVE_PASSWD_COMMAND).append(" ").append(username);
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.connid.bundles.unix.utilities.Constants;
+import org.identityconnectors.common.StringUtil;
+
+/**
+ * The output of a script run by {@link org.connid.bundles.unix.commands.General#batchScript}, split into the output
+ * and exit status of every command. A command whose end marker is missing did not finish, the script was cut off.
+ */
+public class BatchOutput {
+
+    private final Map<Integer, StringBuilder> outputs = new HashMap<Integer, StringBuilder>();
+
+    private final Map<Integer, Integer> exitStatuses = new HashMap<Integer, Integer>();
+
+    private Integer command = null;
+
+    public BatchOutput(final List<String> output) {
+        for (String line : output) {
+            addLine(line);
+        }
+    }
+
+    private void addLine(final String line) {
+        int marker = line.indexOf(Constants.SECTION_MARKER);
+        if (marker < 0) {
+            addOutput(line);
+            return;
+        }
+        // output without a trailing newline leaves its last line in front of the marker
+        addOutput(line.substring(0, marker));
+        String[] header = line.substring(marker + Constants.SECTION_MARKER.length()).trim().split(" ");
+        try {
+            if (Constants.BEGIN_SECTION.equals(header[0]) && header.length > 1) {
+                command = Integer.valueOf(header[1]);
+                outputs.put(command, new StringBuilder());
+            } else if (Constants.END_SECTION.equals(header[0]) && header.length > 2) {
+                exitStatuses.put(Integer.valueOf(header[1]), Integer.valueOf(header[2]));
+                command = null;
+            }
+        } catch (NumberFormatException e) {
+            command = null;
+        }
+    }
+
+    private void addOutput(final String line) {
+        if (command != null && StringUtil.isNotBlank(line)) {
+            StringBuilder commandOutput = outputs.get(command);
+            if (commandOutput.length() > 0) {
+                commandOutput.append("\n");
+            }
+            commandOutput.append(line.trim());
+        }
+    }
+
+    /**
+     * @return whether the command ran to its end
+     */
+    public boolean isFinished(final int command) {
+        return exitStatuses.containsKey(command);
+    }
+
+    /**
+     * @return the exit status of the command, -1 if it did not finish
+     */
+    public int getExitStatus(final int command) {
+        Integer exitStatus = exitStatuses.get(command);
+        return exitStatus == null ? -1 : exitStatus;
+    }
+
+    /**
+     * @return the output of the command, empty if it printed nothing or did not start
+     */
+    public String getOutput(final int command) {
+        StringBuilder commandOutput = outputs.get(command);
+        return commandOutput == null ? "" : commandOutput.toString();
+    }
+}
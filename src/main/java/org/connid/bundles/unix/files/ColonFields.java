@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+/**
+ * The fields of a colon separated passwd, group or shadow line. The line is scanned for its colons once and a field
+ * is only cut out of it when it is asked for, rows that are filtered out never allocate the fields nobody reads. Like
+ * {@code split(":", count)} the last field takes the rest of the line.
+ */
+public final class ColonFields {
+
+    private final String line;
+
+    /**
+     * The positions of the colons ending all fields but the last.
+     */
+    private final int[] colons;
+
+    private ColonFields(final String line, final int[] colons) {
+        this.line = line;
+        this.colons = colons;
+    }
+
+    /**
+     * @return the fields of the line, null if it has less than count fields
+     */
+    public static ColonFields parse(final String line, final int count) {
+        if (line == null) {
+            return null;
+        }
+        int[] colons = new int[count - 1];
+        int from = 0;
+        for (int i = 0; i < colons.length; i++) {
+            int colon = line.indexOf(':', from);
+            if (colon < 0) {
+                return null;
+            }
+            colons[i] = colon;
+            from = colon + 1;
+        }
+        return new ColonFields(line, colons);
+    }
+
+    public String get(final int index) {
+        int start = index == 0 ? 0 : colons[index - 1] + 1;
+        int end = index == colons.length ? line.length() : colons[index];
+        return line.substring(start, end);
+    }
+
+    public int size() {
+        return colons.length + 1;
+    }
+}
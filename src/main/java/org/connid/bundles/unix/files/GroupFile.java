@@ -16,8 +16,11 @@
 package org.connid.bundles.unix.files;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.connid.bundles.unix.schema.SchemaGroupAttribute;
 import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
@@ -27,8 +30,21 @@ public class GroupFile {
 
     private List<GroupRow> groupRows = new ArrayList<GroupRow>();
 
+    /**
+     * Equality lookups by attribute name, each index is only built when it is first used.
+     */
+    private final Map<String, RowIndex<GroupRow>> indexes = new HashMap<String, RowIndex<GroupRow>>();
+
+    /**
+     * Starts with, ends with and contains lookups by attribute name, also built when first used.
+     */
+    private final Map<String, SortedIndex<GroupRow>> sortedIndexes = new HashMap<String, SortedIndex<GroupRow>>();
+
+    private GroupMembership membership = null;
+
     public GroupFile(final List<String> groupFile) {
         setGroupRows(groupFile);
+        setIndexes();
     }
     
     public List<GroupRow> getGroupRows() {
@@ -41,83 +57,72 @@ public class GroupFile {
         }
     }
 
+    /**
+     * @return the groups of every user, inverted from the rows on first use
+     */
+    public synchronized GroupMembership getMembership() {
+        if (membership == null) {
+            membership = new GroupMembership(groupRows);
+        }
+        return membership;
+    }
+
     public final List<GroupRow> searchRowByAttribute(final String attributeName, final String attributeValue, final boolean not) {
-        List<GroupRow> groupRow = new ArrayList<GroupRow>();
-        for (Iterator<GroupRow> it = groupRows.iterator(); it.hasNext();) {
-        	GroupRow group = it.next();
-			if (attributeName.equals(SchemaGroupAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-				if (attributeValue.equalsIgnoreCase(group.getGroupname())) {
-					groupRow.add(group);
-				}
-			}
-			if (attributeName.equals(SchemaGroupAttribute.GID.getName())) {
-
-				if (attributeValue.equalsIgnoreCase(group.getGroupIdentifier())) {
-					groupRow.add(group);
-				}
-			}
+        RowIndex<GroupRow> index = indexes.get(attributeName);
+        if (index == null) {
+            return new ArrayList<GroupRow>();
         }
-        return groupRow;
+        return index.get(attributeValue, not);
+    }
+
+    /**
+     * @return the group names found in more than one row
+     */
+    public Set<String> getDuplicateGroupnames() {
+        return indexes.get(Uid.NAME).getDuplicates();
     }
 
     public List<GroupRow> searchRowByEndsWithValue(final String attributeName,
             final String endsWithValue) {
-    	 List<GroupRow> groupRow = new ArrayList<GroupRow>();
-         for (Iterator<GroupRow> it = groupRows.iterator(); it.hasNext();) {
-         	GroupRow group = it.next();
- 			if (attributeName.equals(SchemaGroupAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
- 				if (endsWithValue.endsWith(group.getGroupname())) {
- 					groupRow.add(group);
- 				}
- 			}
- 			if (attributeName.equals(SchemaGroupAttribute.GID.getName())) {
-
- 				if (endsWithValue.endsWith(group.getGroupIdentifier())) {
- 					groupRow.add(group);
- 				}
- 			}
-         }
-         return groupRow;
-           }
+        SortedIndex<GroupRow> index = sortedIndexes.get(attributeName);
+        return index == null ? new ArrayList<GroupRow>() : index.endsWith(endsWithValue);
+    }
 
     public List<GroupRow> searchRowByStartsWithValue(final String attributeName, 
             final String startWithValue) {
-    	List<GroupRow> groupRow = new ArrayList<GroupRow>();
-        for (Iterator<GroupRow> it = groupRows.iterator(); it.hasNext();) {
-        	GroupRow group = it.next();
-			if (attributeName.equals(SchemaGroupAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-				if (startWithValue.startsWith(group.getGroupname())) {
-					groupRow.add(group);
-				}
-			}
-			if (attributeName.equals(SchemaGroupAttribute.GID.getName())) {
-
-				if (startWithValue.startsWith(group.getGroupIdentifier())) {
-					groupRow.add(group);
-				}
-			}
-        }
-        return groupRow;
-    	
+        SortedIndex<GroupRow> index = sortedIndexes.get(attributeName);
+        return index == null ? new ArrayList<GroupRow>() : index.startsWith(startWithValue);
     }
 
     public List<GroupRow> searchRowByContainsValue(String attributeName, String containsValue) {
-    	List<GroupRow> groupRow = new ArrayList<GroupRow>();
-        for (Iterator<GroupRow> it = groupRows.iterator(); it.hasNext();) {
-        	GroupRow group = it.next();
-			if (attributeName.equals(SchemaGroupAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-				if (containsValue.contains(group.getGroupname())) {
-					groupRow.add(group);
-				}
-			}
-			if (attributeName.equals(SchemaGroupAttribute.GID.getName())) {
-
-				if (containsValue.contains(group.getGroupIdentifier())) {
-					groupRow.add(group);
-				}
-			}
+        SortedIndex<GroupRow> index = sortedIndexes.get(attributeName);
+        return index == null ? new ArrayList<GroupRow>() : index.contains(containsValue);
+    }
+
+    private void setIndexes() {
+        addIndexes("group names", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return groupRows.get(position).getGroupname();
+            }
+        }, true, SchemaGroupAttribute.NAME.getName(), Uid.NAME);
+        addIndexes("gids", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return groupRows.get(position).getGroupIdentifier();
+            }
+        }, false, SchemaGroupAttribute.GID.getName());
+    }
+
+    private void addIndexes(final String name, final RowIndex.Key key, final boolean unique,
+            final String... attributeNames) {
+        RowIndex<GroupRow> index = new RowIndex<GroupRow>(name, groupRows, key, unique);
+        SortedIndex<GroupRow> sortedIndex = new SortedIndex<GroupRow>(groupRows, key);
+        for (String attributeName : attributeNames) {
+            indexes.put(attributeName, index);
+            sortedIndexes.put(attributeName, sortedIndex);
         }
-        return groupRow;
-    	
-    	    }
+    }
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.connid.bundles.unix.utilities.ValuePool;
+
+/**
+ * The group database inverted, so that the groups of every user can be listed like "id -nG" does without asking the
+ * host once per user: the group of the user's gid first, then the groups listing the user as a member. The members
+ * of a group are joined the same way the other way round.
+ */
+public class GroupMembership {
+
+    private final Map<String, String> groupNames = new HashMap<String, String>();
+
+    private final Map<String, Set<String>> supplementaryGroups = new HashMap<String, Set<String>>();
+
+    public GroupMembership(final List<GroupRow> groupRows) {
+        for (GroupRow groupRow : groupRows) {
+            String groupname = ValuePool.intern(groupRow.getGroupname());
+            if (groupname.isEmpty()) {
+                continue;
+            }
+            if (!groupNames.containsKey(groupRow.getGroupIdentifier())) {
+                groupNames.put(groupRow.getGroupIdentifier(), groupname);
+            }
+            for (String member : groupRow.getUsers().split(",")) {
+                member = member.trim();
+                if (member.isEmpty()) {
+                    continue;
+                }
+                Set<String> groups = supplementaryGroups.get(member);
+                if (groups == null) {
+                    groups = new LinkedHashSet<String>();
+                    supplementaryGroups.put(member, groups);
+                }
+                groups.add(groupname);
+            }
+        }
+    }
+
+    /**
+     * @return the users whose primary group it is, followed by the members listed by the group
+     */
+    public static List<String> getMembers(final GroupRow groupRow, final PasswdFile passwdFile) {
+        Set<String> members = new LinkedHashSet<String>();
+        if (passwdFile != null) {
+            for (PasswdRow passwdRow : passwdFile.searchRowByGroupIdentifier(groupRow.getGroupIdentifier())) {
+                members.add(passwdRow.getUsername());
+            }
+        }
+        for (String member : groupRow.getUsers().split(",")) {
+            member = member.trim();
+            if (!member.isEmpty()) {
+                members.add(member);
+            }
+        }
+        return new ArrayList<String>(members);
+    }
+
+    /**
+     * @return whether a group has the gid, a primary group only known to another name service has none here
+     */
+    public boolean hasGroup(final String gid) {
+        return groupNames.containsKey(gid);
+    }
+
+    /**
+     * @return the groups of the user, primary group first, null if there are none
+     */
+    public List<String> getUserGroups(final PasswdRow passwdRow) {
+        Set<String> groups = new LinkedHashSet<String>();
+        String primaryGroup = groupNames.get(passwdRow.getGroupIdentifier());
+        if (primaryGroup != null) {
+            groups.add(primaryGroup);
+        }
+        Set<String> supplementary = supplementaryGroups.get(passwdRow.getUsername());
+        if (supplementary != null) {
+            groups.addAll(supplementary);
+        }
+        return groups.isEmpty() ? null : new ArrayList<String>(groups);
+    }
+}
@@ -17,11 +17,34 @@ package org.connid.bundles.unix.files;
 
 public class GroupRow {
 
+    /**
+     * The parsed line the fields not read yet are taken from, null for a row filled with the setters.
+     */
+    private ColonFields fields = null;
+
     private String groupname = "";
     private String passwordValidator = "";
     private String groupIdentifier = "";
-    
+    private String users = "";
+
+    public GroupRow() {
+    }
+
+    /**
+     * A row whose fields are cut out of the line when first read.
+     */
+    public GroupRow(final ColonFields fields) {
+        this.fields = fields;
+        groupname = null;
+        passwordValidator = null;
+        groupIdentifier = null;
+        users = null;
+    }
+
     public String getGroupIdentifier() {
+        if (groupIdentifier == null) {
+            groupIdentifier = fields.get(GroupRowElements.GROUP_IDENTIFIER.getCode());
+        }
         return groupIdentifier;
     }
 
@@ -30,6 +53,9 @@ public class GroupRow {
     }
 
     public String getPasswordValidator() {
+        if (passwordValidator == null) {
+            passwordValidator = fields.get(GroupRowElements.PASSWORD_VALIDATOR.getCode());
+        }
         return passwordValidator;
     }
 
@@ -38,10 +64,27 @@ public class GroupRow {
     }
 
     public String getGroupname() {
+        if (groupname == null) {
+            groupname = fields.get(GroupRowElements.GROUPNAME.getCode());
+        }
 		return groupname;
 	}
     
     public void setGroupname(String groupname) {
 		this.groupname = groupname;
 	}
+
+    /**
+     * @return the comma separated supplementary members
+     */
+    public String getUsers() {
+        if (users == null) {
+            users = fields.get(GroupRowElements.USERS.getCode());
+        }
+        return users;
+    }
+
+    public void setUsers(String users) {
+        this.users = users;
+    }
 }
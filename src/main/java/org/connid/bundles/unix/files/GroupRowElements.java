@@ -20,7 +20,7 @@ public enum GroupRowElements {
     GROUPNAME(0),
     PASSWORD_VALIDATOR(1),
     GROUP_IDENTIFIER(2),
-    USERS(3); //probably will be not used
+    USERS(3);
     
     private int code;
 
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.connid.bundles.unix.utilities.ValuePool;
+
+/**
+ * The rows of a passwd snapshot stored by column instead of as one object per row, so that the snapshots of many
+ * hosts fit into one connector server. Uids and gids are kept as ints, the password placeholder, the shell and the
+ * directory part of the home are looked up in a dictionary of the distinct values, usernames, comments and the last
+ * part of the home are packed into one char array per column. As a list it hands out a new {@link PasswdRow} for
+ * every row read, changing it does not change the snapshot.
+ */
+final class PasswdColumns extends AbstractList<PasswdRow> implements RandomAccess {
+
+    private final int size;
+
+    private final TextColumn usernames;
+
+    private final DictionaryColumn passwordValidators;
+
+    private final NumberColumn userIdentifiers;
+
+    private final NumberColumn groupIdentifiers;
+
+    private final TextColumn comments;
+
+    private final DictionaryColumn homeParents;
+
+    private final TextColumn homeNames;
+
+    private final DictionaryColumn shells;
+
+    PasswdColumns(final List<String> passwdFile) {
+        size = passwdFile.size();
+        usernames = new TextColumn(size);
+        passwordValidators = new DictionaryColumn(size);
+        userIdentifiers = new NumberColumn(size);
+        groupIdentifiers = new NumberColumn(size);
+        comments = new TextColumn(size);
+        homeParents = new DictionaryColumn(size);
+        homeNames = new TextColumn(size);
+        shells = new DictionaryColumn(size);
+
+        for (String line : passwdFile) {
+            ColonFields fields = ColonFields.parse(line, PasswdRowElements.values().length);
+            usernames.add(field(fields, PasswdRowElements.USERNAME));
+            passwordValidators.add(field(fields, PasswdRowElements.PASSWORD_VALIDATOR));
+            userIdentifiers.add(field(fields, PasswdRowElements.USER_IDENTIFIER));
+            groupIdentifiers.add(field(fields, PasswdRowElements.GROUP_IDENTIFIER));
+            comments.add(field(fields, PasswdRowElements.COMMENT));
+            String home = field(fields, PasswdRowElements.HOME_DIRECTORY);
+            int slash = home.lastIndexOf('/') + 1;
+            homeParents.add(home.substring(0, slash));
+            homeNames.add(home.substring(slash));
+            shells.add(field(fields, PasswdRowElements.SHELL));
+        }
+
+        usernames.trim();
+        passwordValidators.trim();
+        comments.trim();
+        homeParents.trim();
+        homeNames.trim();
+        shells.trim();
+    }
+
+    /**
+     * @return the field of the line, empty like all fields of a row that could not be parsed
+     */
+    private static String field(final ColonFields fields, final PasswdRowElements element) {
+        return fields == null ? "" : fields.get(element.getCode());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Only the size, the rows are not worth building to log them.
+     */
+    @Override
+    public String toString() {
+        return "PasswdColumns[" + size + " rows]";
+    }
+
+    @Override
+    public PasswdRow get(final int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Row " + position + " of " + size);
+        }
+        PasswdRow passwdRow = new PasswdRow();
+        passwdRow.setUsername(getUsername(position));
+        passwdRow.setPasswordValidator(passwordValidators.get(position));
+        passwdRow.setUserIdentifier(getUserIdentifier(position));
+        passwdRow.setGroupIdentifier(getGroupIdentifier(position));
+        passwdRow.setComment(getComment(position));
+        passwdRow.setHomeDirectory(getHomeDirectory(position));
+        passwdRow.setShell(getShell(position));
+        return passwdRow;
+    }
+
+    String getUsername(final int position) {
+        return usernames.get(position);
+    }
+
+    String getUserIdentifier(final int position) {
+        return userIdentifiers.get(position);
+    }
+
+    String getGroupIdentifier(final int position) {
+        return groupIdentifiers.get(position);
+    }
+
+    String getComment(final int position) {
+        return comments.get(position);
+    }
+
+    String getHomeDirectory(final int position) {
+        return homeParents.get(position) + homeNames.get(position);
+    }
+
+    String getShell(final int position) {
+        return shells.get(position);
+    }
+
+    /**
+     * Values packed one after the other into a char array, with the position where each one ends.
+     */
+    private static final class TextColumn {
+
+        private StringBuilder builder = new StringBuilder();
+
+        private char[] chars = null;
+
+        private final int[] ends;
+
+        private int count = 0;
+
+        TextColumn(final int size) {
+            ends = new int[size];
+        }
+
+        void add(final String value) {
+            builder.append(value);
+            ends[count++] = builder.length();
+        }
+
+        void trim() {
+            chars = new char[builder.length()];
+            builder.getChars(0, chars.length, chars, 0);
+            builder = null;
+        }
+
+        String get(final int position) {
+            int start = position == 0 ? 0 : ends[position - 1];
+            return new String(chars, start, ends[position] - start);
+        }
+    }
+
+    /**
+     * Few distinct values, every row keeps the number of its value in the dictionary.
+     */
+    private static final class DictionaryColumn {
+
+        private Map<String, Integer> codes = new HashMap<String, Integer>();
+
+        private final List<String> dictionary = new ArrayList<String>();
+
+        private final int[] values;
+
+        private int count = 0;
+
+        DictionaryColumn(final int size) {
+            values = new int[size];
+        }
+
+        void add(final String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(value, code);
+                // the snapshots of all hosts share the instances
+                dictionary.add(ValuePool.intern(value));
+            }
+            values[count++] = code;
+        }
+
+        void trim() {
+            codes = null;
+        }
+
+        String get(final int position) {
+            return dictionary.get(values[position]);
+        }
+    }
+
+    /**
+     * Ids as unsigned ints. The rare value that would not read back the same, like an empty or zero padded one, is
+     * kept as it is.
+     */
+    private static final class NumberColumn {
+
+        private final int[] values;
+
+        private final Map<Integer, String> others = new HashMap<Integer, String>();
+
+        private int count = 0;
+
+        NumberColumn(final int size) {
+            values = new int[size];
+        }
+
+        void add(final String value) {
+            try {
+                int number = Integer.parseUnsignedInt(value);
+                if (Integer.toUnsignedString(number).equals(value)) {
+                    values[count++] = number;
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                // kept as it is below
+            }
+            others.put(count++, value);
+        }
+
+        String get(final int position) {
+            String other = others.isEmpty() ? null : others.get(position);
+            return other == null ? Integer.toUnsignedString(values[position]) : other;
+        }
+    }
+
+}
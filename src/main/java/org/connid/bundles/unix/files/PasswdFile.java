@@ -16,151 +16,139 @@
 package org.connid.bundles.unix.files;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.connid.bundles.unix.schema.SchemaAccountAttribute;
-import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
 import org.identityconnectors.framework.common.objects.Uid;
 
 public class PasswdFile {
 
-    private List<PasswdRow> passwdRows = new ArrayList<PasswdRow>();
+    /**
+     * The rows by column, a snapshot of many thousand accounts is kept for a while by the snapshot cache.
+     */
+    private final PasswdColumns passwdRows;
+
+    /**
+     * Equality lookups by attribute name, each index is only built when it is first used.
+     */
+    private final Map<String, RowIndex<PasswdRow>> indexes = new HashMap<String, RowIndex<PasswdRow>>();
+
+    /**
+     * Starts with, ends with and contains lookups by attribute name, also built when first used.
+     */
+    private final Map<String, SortedIndex<PasswdRow>> sortedIndexes = new HashMap<String, SortedIndex<PasswdRow>>();
+
+    /**
+     * The users by gid, for the members of their primary groups.
+     */
+    private final RowIndex<PasswdRow> primaryGroups;
 
     public PasswdFile(final List<String> passwdFile) {
-        setPasswdRows(passwdFile);
+        passwdRows = new PasswdColumns(passwdFile);
+        setIndexes();
+        primaryGroups = new RowIndex<PasswdRow>("primary groups", passwdRows, new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return passwdRows.getGroupIdentifier(position);
+            }
+        }, false);
     }
     
+    /**
+     * @return the rows in the order of the snapshot, each one read is built anew from the columns
+     */
     public List<PasswdRow> getPasswdRows() {
 		return passwdRows;
 	}
 
-    private void setPasswdRows(final List<String> passwdFile) {
-        for (Iterator<String> it = passwdFile.iterator(); it.hasNext();) {
-            passwdRows.add(EvaluateCommandsResultOutput.toPasswdRow(it.next()));
+    public final List<PasswdRow> searchRowByAttribute(final String attributeName, final String attributeValue, final boolean not) {
+        RowIndex<PasswdRow> index = indexes.get(attributeName);
+        if (index == null) {
+            return new ArrayList<PasswdRow>();
         }
+        return index.get(attributeValue, not);
     }
 
-    public final List<PasswdRow> searchRowByAttribute(final String attributeName, final String attributeValue, final boolean not) {
-        List<PasswdRow> userRow = new ArrayList<PasswdRow>();
-        for (Iterator<PasswdRow> it = passwdRows.iterator(); it.hasNext();) {
-            PasswdRow passwdRow = it.next();
-			if (attributeName.equals(SchemaAccountAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-				if (attributeValue.equalsIgnoreCase(passwdRow.getUsername())) {
-					userRow.add(passwdRow);
-				}
-			}
-			if (attributeName.equals(SchemaAccountAttribute.SHEL.getName())) {
-				if (attributeValue.equalsIgnoreCase(passwdRow.getShell())) {
-					userRow.add(passwdRow);
-				}
-			}
-			if (attributeName.equals(SchemaAccountAttribute.COMMENT.getName())) {
-
-				if (attributeValue.equalsIgnoreCase(passwdRow.getComment())) {
-					userRow.add(passwdRow);
-				}
-			}
-			if (attributeName.equals(SchemaAccountAttribute.HOME.getName())) {
-
-				if (attributeValue.equalsIgnoreCase(passwdRow.getHomeDirectory())) {
-					userRow.add(passwdRow);
-				}
-			}
-        }
-        return userRow;
+    /**
+     * @return the users whose primary group has the gid
+     */
+    public List<PasswdRow> searchRowByGroupIdentifier(final String gid) {
+        return primaryGroups.get(gid, false);
+    }
+
+    /**
+     * @return the usernames found in more than one row
+     */
+    public Set<String> getDuplicateUsernames() {
+        return indexes.get(Uid.NAME).getDuplicates();
     }
 
     public List<PasswdRow> searchRowByStartsWithValue(final String attributeName,
             final String startWithValue) {
-        List<PasswdRow> userRow = new ArrayList<PasswdRow>();
-        for (Iterator<PasswdRow> it = passwdRows.iterator(); it.hasNext();) {
-            PasswdRow passwdRow = it.next();
-            if (attributeName.equals(SchemaAccountAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-            	 if (passwdRow.getUsername().startsWith(startWithValue)) {
-                     userRow.add(passwdRow);
-                 }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.SHEL.getName())) {
-				if (passwdRow.getShell().startsWith(startWithValue)) {
-	                userRow.add(passwdRow);
-	            }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.COMMENT.getName())) {
-
-				 if (passwdRow.getComment().startsWith(startWithValue)) {
-		                userRow.add(passwdRow);
-		            }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.HOME.getName())) {
-
-				 if (passwdRow.getHomeDirectory().startsWith(startWithValue)) {
-		                userRow.add(passwdRow);
-		            }
-			}
-           
-        }
-        return userRow;
+        SortedIndex<PasswdRow> index = sortedIndexes.get(attributeName);
+        return index == null ? new ArrayList<PasswdRow>() : index.startsWith(startWithValue);
     }
 
     public List<PasswdRow> searchRowByEndsWithValue(final String attributeName, 
             final String endsWithValue) {
-        List<PasswdRow> userRow = new ArrayList<PasswdRow>();
-        for (Iterator<PasswdRow> it = passwdRows.iterator(); it.hasNext();) {
-            PasswdRow passwdRow = it.next();
-            if (attributeName.equals(SchemaAccountAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-            	 if (passwdRow.getUsername().endsWith(endsWithValue)) {
-                     userRow.add(passwdRow);
-                 }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.SHEL.getName())) {
-				if (passwdRow.getShell().endsWith(endsWithValue)) {
-	                userRow.add(passwdRow);
-	            }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.COMMENT.getName())) {
-
-				if (passwdRow.getComment().endsWith(endsWithValue)) {
-	                userRow.add(passwdRow);
-	            }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.HOME.getName())) {
-				if (passwdRow.getHomeDirectory().endsWith(endsWithValue)) {
-	                userRow.add(passwdRow);
-	            }
-			}
-            
-        }
-        return userRow;
+        SortedIndex<PasswdRow> index = sortedIndexes.get(attributeName);
+        return index == null ? new ArrayList<PasswdRow>() : index.endsWith(endsWithValue);
     }
 
     public List<PasswdRow> searchRowByContainsValue(String attributeName, String containsValue) {
-        List<PasswdRow> userRow = new ArrayList<PasswdRow>();
-        for (Iterator<PasswdRow> it = passwdRows.iterator(); it.hasNext();) {
-            PasswdRow passwdRow = it.next();
-            if (attributeName.equals(SchemaAccountAttribute.NAME.getName()) || attributeName.equals(Uid.NAME)) {
-            	if (passwdRow.getUsername().contains(containsValue)) {
-                    userRow.add(passwdRow);
-                }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.SHEL.getName())) {
-				 if (passwdRow.getShell().contains(containsValue)) {
-		                userRow.add(passwdRow);
-		            }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.COMMENT.getName())) {
-				 if (passwdRow.getComment().contains(containsValue)) {
-		                userRow.add(passwdRow);
-		            }
-			}
-			if (attributeName.equals(SchemaAccountAttribute.HOME.getName())) {
-				 if (passwdRow.getHomeDirectory().contains(containsValue)) {
-		                userRow.add(passwdRow);
-		            }
-			}
-           
-           
+        SortedIndex<PasswdRow> index = sortedIndexes.get(attributeName);
+        return index == null ? new ArrayList<PasswdRow>() : index.contains(containsValue);
+    }
+
+    private void setIndexes() {
+        addIndexes("usernames", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return passwdRows.getUsername(position);
+            }
+        }, true, SchemaAccountAttribute.NAME.getName(), Uid.NAME);
+        addIndexes("uids", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return passwdRows.getUserIdentifier(position);
+            }
+        }, false, SchemaAccountAttribute.UID.getName());
+        addIndexes("shells", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return passwdRows.getShell(position);
+            }
+        }, false, SchemaAccountAttribute.SHEL.getName());
+        addIndexes("comments", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return passwdRows.getComment(position);
+            }
+        }, false, SchemaAccountAttribute.COMMENT.getName());
+        addIndexes("home directories", new RowIndex.Key() {
+
+            @Override
+            public String of(final int position) {
+                return passwdRows.getHomeDirectory(position);
+            }
+        }, false, SchemaAccountAttribute.HOME.getName());
+    }
+
+    private void addIndexes(final String name, final RowIndex.Key key, final boolean unique,
+            final String... attributeNames) {
+        RowIndex<PasswdRow> index = new RowIndex<PasswdRow>(name, passwdRows, key, unique);
+        SortedIndex<PasswdRow> sortedIndex = new SortedIndex<PasswdRow>(passwdRows, key);
+        for (String attributeName : attributeNames) {
+            indexes.put(attributeName, index);
+            sortedIndexes.put(attributeName, sortedIndex);
         }
-        return userRow;
     }
 }
@@ -15,8 +15,15 @@
  */
 package org.connid.bundles.unix.files;
 
+import org.connid.bundles.unix.utilities.ValuePool;
+
 public class PasswdRow {
 
+    /**
+     * The parsed line the fields not read yet are taken from, null for a row filled with the setters.
+     */
+    private ColonFields fields = null;
+
     private String username = "";
     private String passwordValidator = "";
     private String userIdentifier = "";
@@ -25,7 +32,27 @@ public class PasswdRow {
     private String homeDirectory = "";
     private String shell = "";
 
+    public PasswdRow() {
+    }
+
+    /**
+     * A row whose fields are cut out of the line when first read.
+     */
+    public PasswdRow(final ColonFields fields) {
+        this.fields = fields;
+        username = null;
+        passwordValidator = null;
+        userIdentifier = null;
+        groupIdentifier = null;
+        comment = null;
+        homeDirectory = null;
+        shell = null;
+    }
+
     public String getComment() {
+        if (comment == null) {
+            comment = fields.get(PasswdRowElements.COMMENT.getCode());
+        }
         return comment;
     }
 
@@ -34,6 +61,9 @@ public class PasswdRow {
     }
 
     public String getGroupIdentifier() {
+        if (groupIdentifier == null) {
+            groupIdentifier = ValuePool.intern(fields.get(PasswdRowElements.GROUP_IDENTIFIER.getCode()));
+        }
         return groupIdentifier;
     }
 
@@ -42,6 +72,9 @@ public class PasswdRow {
     }
 
     public String getHomeDirectory() {
+        if (homeDirectory == null) {
+            homeDirectory = fields.get(PasswdRowElements.HOME_DIRECTORY.getCode());
+        }
         return homeDirectory;
     }
 
@@ -50,6 +83,9 @@ public class PasswdRow {
     }
 
     public String getPasswordValidator() {
+        if (passwordValidator == null) {
+            passwordValidator = ValuePool.intern(fields.get(PasswdRowElements.PASSWORD_VALIDATOR.getCode()));
+        }
         return passwordValidator;
     }
 
@@ -58,6 +94,9 @@ public class PasswdRow {
     }
 
     public String getShell() {
+        if (shell == null) {
+            shell = ValuePool.intern(fields.get(PasswdRowElements.SHELL.getCode()));
+        }
         return shell;
     }
 
@@ -66,6 +105,9 @@ public class PasswdRow {
     }
 
     public String getUserIdentifier() {
+        if (userIdentifier == null) {
+            userIdentifier = fields.get(PasswdRowElements.USER_IDENTIFIER.getCode());
+        }
         return userIdentifier;
     }
 
@@ -74,6 +116,9 @@ public class PasswdRow {
     }
 
     public String getUsername() {
+        if (username == null) {
+            username = fields.get(PasswdRowElements.USERNAME.getCode());
+        }
         return username;
     }
 
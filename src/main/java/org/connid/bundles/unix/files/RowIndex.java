@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.identityconnectors.common.logging.Log;
+
+/**
+ * The rows of a snapshot hashed by one of their fields, built on the first lookup. Keys are compared ignoring case,
+ * like the equality filters do. An index over a field that must be unique remembers the keys found more than once.
+ * It keeps the positions of the rows only, chained from the first row with a key to the last one, and takes the
+ * rows from the snapshot when they are asked for.
+ */
+final class RowIndex<R> {
+
+    private static final Log LOG = Log.getLog(RowIndex.class);
+
+    interface Key {
+
+        /**
+         * @return the field of the row at the position in the snapshot
+         */
+        String of(int position);
+    }
+
+    private final String name;
+
+    private final List<R> rows;
+
+    private final Key key;
+
+    private final boolean unique;
+
+    /**
+     * The first and the last position of the rows with the key.
+     */
+    private Map<String, int[]> index = null;
+
+    /**
+     * The position of the next row with the same key, -1 after the last one.
+     */
+    private int[] next = null;
+
+    private Set<String> duplicates = null;
+
+    RowIndex(final String name, final List<R> rows, final Key key, final boolean unique) {
+        this.name = name;
+        this.rows = rows;
+        this.key = key;
+        this.unique = unique;
+    }
+
+    /**
+     * @return the rows whose key equals the value, or with not all the others, in the order of the snapshot
+     */
+    List<R> get(final String value, final boolean not) {
+        int[] ends = value == null ? null : getIndex().get(normalize(value));
+        List<R> found = new ArrayList<R>();
+        BitSet excluded = not ? new BitSet(rows.size()) : null;
+        for (int position = ends == null ? -1 : ends[0]; position >= 0; position = next[position]) {
+            if (not) {
+                excluded.set(position);
+            } else {
+                found.add(rows.get(position));
+            }
+        }
+        if (not) {
+            for (int position = excluded.nextClearBit(0); position < rows.size();
+                    position = excluded.nextClearBit(position + 1)) {
+                found.add(rows.get(position));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the keys shared by more than one row, always empty for an index over a field that may repeat
+     */
+    Set<String> getDuplicates() {
+        getIndex();
+        return duplicates;
+    }
+
+    private synchronized Map<String, int[]> getIndex() {
+        if (index == null) {
+            Map<String, int[]> built = new HashMap<String, int[]>(rows.size() * 4 / 3 + 1);
+            int[] chained = new int[rows.size()];
+            Set<String> repeated = new LinkedHashSet<String>();
+            for (int position = 0; position < chained.length; position++) {
+                chained[position] = -1;
+                String value = key.of(position);
+                if (value == null) {
+                    continue;
+                }
+                String normalized = normalize(value);
+                int[] ends = built.get(normalized);
+                if (ends == null) {
+                    built.put(normalized, new int[] { position, position });
+                } else {
+                    if (unique) {
+                        repeated.add(value);
+                    }
+                    chained[ends[1]] = position;
+                    ends[1] = position;
+                }
+            }
+            if (!repeated.isEmpty()) {
+                LOG.warn("Duplicate {0} in snapshot: {1}", name, repeated);
+            }
+            duplicates = Collections.unmodifiableSet(repeated);
+            next = chained;
+            index = built;
+        }
+        return index;
+    }
+
+    private static String normalize(final String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
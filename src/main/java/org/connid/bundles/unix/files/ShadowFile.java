@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The whole shadow database read with one command, the status of every user without any further one. Only the
+ * fields the activation attributes need are kept, password hashes never stay in memory.
+ */
+public class ShadowFile {
+
+    private final Map<String, ShadowStatus> statuses = new HashMap<String, ShadowStatus>();
+
+    public ShadowFile(final List<String> shadowFile) {
+        for (String line : shadowFile) {
+            ShadowStatus status = ShadowStatus.parse(line);
+            if (status != null) {
+                String username = line.trim();
+                statuses.put(username.substring(0, username.indexOf(':')), status);
+            }
+        }
+    }
+
+    /**
+     * @return the status of the user, null if there is no entry
+     */
+    public ShadowStatus getStatus(final String username) {
+        return statuses.get(username);
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+}
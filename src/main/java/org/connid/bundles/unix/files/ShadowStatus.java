@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
+import org.identityconnectors.common.StringUtil;
+
+/**
+ * The fields of a shadow entry the activation attributes are derived from, kept as primitives instead of the line.
+ */
+public final class ShadowStatus {
+
+    /**
+     * The day of a field left empty.
+     */
+    public static final int NO_DAY = -1;
+
+    private static final int FIELDS = 9;
+
+    private static final int PASSWORD = 1;
+
+    private static final int LAST_CHANGE = 2;
+
+    private static final int EXPIRE = 7;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final boolean locked;
+
+    private final int lastChangeDay;
+
+    private final int expireDay;
+
+    private ShadowStatus(final boolean locked, final int lastChangeDay, final int expireDay) {
+        this.locked = locked;
+        this.lastChangeDay = lastChangeDay;
+        this.expireDay = expireDay;
+    }
+
+    /**
+     * @return the status of the shadow line, null if it is not one
+     */
+    public static ShadowStatus parse(final String line) {
+        ColonFields fields = StringUtil.isBlank(line) ? null : ColonFields.parse(line.trim(), FIELDS);
+        if (fields == null) {
+            return null;
+        }
+        return new ShadowStatus(EvaluateCommandsResultOutput.evaluateUserLockoutStatus(fields.get(PASSWORD)),
+                day(fields.get(LAST_CHANGE)), day(fields.get(EXPIRE)));
+    }
+
+    private static int day(final String field) {
+        if (StringUtil.isBlank(field)) {
+            return NO_DAY;
+        }
+        try {
+            return Math.max(Integer.parseInt(field.trim()), NO_DAY);
+        } catch (NumberFormatException e) {
+            return NO_DAY;
+        }
+    }
+
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * @return the days since 1970-01-01 of the last password change, {@link #NO_DAY} if unknown
+     */
+    public int getLastChangeDay() {
+        return lastChangeDay;
+    }
+
+    /**
+     * @return the days since 1970-01-01 the account expires on, {@link #NO_DAY} if it never does
+     */
+    public int getExpireDay() {
+        return expireDay;
+    }
+
+    /**
+     * @return the expiry in milliseconds, 0 if the account never expires or expired on the first day
+     */
+    public long getDisableDate() {
+        return expireDay == NO_DAY ? 0 : expireDay * DAY_MILLIS;
+    }
+
+    @Override
+    public String toString() {
+        return "ShadowStatus[locked=" + locked + ", lastChangeDay=" + lastChangeDay + ", expireDay=" + expireDay + "]";
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.connid.bundles.unix.UnixConfiguration;
+
+/**
+ * The last complete passwd and group snapshots read from one host, shared by all connector instances connecting to
+ * it. Every write on the host invalidates them. A snapshot whose read started before the invalidation is not stored,
+ * so it can not bring back entries the write has changed.
+ */
+public final class SnapshotCache {
+
+    private static final Map<String, SnapshotCache> CACHES = new HashMap<String, SnapshotCache>();
+
+    private PasswdFile passwdFile = null;
+
+    private long passwdFileTime = 0;
+
+    private GroupFile groupFile = null;
+
+    private long groupFileTime = 0;
+
+    private long generation = 0;
+
+    private SnapshotCache() {
+    }
+
+    public static SnapshotCache forHost(final UnixConfiguration unixConfiguration) {
+        String host = unixConfiguration.getHostname() + ":" + unixConfiguration.getPort();
+        synchronized (CACHES) {
+            SnapshotCache cache = CACHES.get(host);
+            if (cache == null) {
+                cache = new SnapshotCache();
+                CACHES.put(host, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return the value to pass to the put methods once the snapshot read from now on has arrived
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the passwd snapshot, null if there is none younger than the ttl
+     */
+    public synchronized PasswdFile getPasswdFile(final long ttl) {
+        return System.currentTimeMillis() - passwdFileTime < ttl ? passwdFile : null;
+    }
+
+    public synchronized void putPasswdFile(final PasswdFile passwdFile, final long generation) {
+        if (generation == this.generation) {
+            this.passwdFile = passwdFile;
+            passwdFileTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return the group snapshot, null if there is none younger than the ttl
+     */
+    public synchronized GroupFile getGroupFile(final long ttl) {
+        return System.currentTimeMillis() - groupFileTime < ttl ? groupFile : null;
+    }
+
+    public synchronized void putGroupFile(final GroupFile groupFile, final long generation) {
+        if (generation == this.generation) {
+            this.groupFile = groupFile;
+            groupFileTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Drops both snapshots, a user write can change the groups and a group write the users' groups.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        passwdFile = null;
+        groupFile = null;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The values of one field of the snapshot rows in sorted arrays, for the starts with, ends with and contains
+ * searches. A prefix is found with a binary search over the values, a suffix the same way over the reversed values.
+ * Contains has no such shortcut and scans the values. The matching rows are returned in the order of the snapshot,
+ * comparisons are case sensitive like the filters on the host.
+ */
+final class SortedIndex<R> {
+
+    private final List<R> rows;
+
+    private final RowIndex.Key key;
+
+    private String[] values = null;
+
+    private Entry[] prefixes = null;
+
+    private Entry[] suffixes = null;
+
+    SortedIndex(final List<R> rows, final RowIndex.Key key) {
+        this.rows = rows;
+        this.key = key;
+    }
+
+    List<R> startsWith(final String prefix) {
+        return collect(getPrefixes(), prefix);
+    }
+
+    List<R> endsWith(final String suffix) {
+        return collect(getSuffixes(), reverse(suffix));
+    }
+
+    List<R> contains(final String value) {
+        String[] all = getValues();
+        List<R> found = new ArrayList<R>();
+        for (int i = 0; i < all.length; i++) {
+            if (all[i] != null && all[i].contains(value)) {
+                found.add(rows.get(i));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the rows of the entries starting with the prefix, the first one is found by binary search
+     */
+    private List<R> collect(final Entry[] entries, final String prefix) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries[middle].key.compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < entries.length && entries[end].key.startsWith(prefix)) {
+            end++;
+        }
+        int[] positions = new int[end - low];
+        for (int i = low; i < end; i++) {
+            positions[i - low] = entries[i].position;
+        }
+        Arrays.sort(positions);
+        List<R> found = new ArrayList<R>(positions.length);
+        for (int position : positions) {
+            found.add(rows.get(position));
+        }
+        return found;
+    }
+
+    private synchronized String[] getValues() {
+        if (values == null) {
+            String[] read = new String[rows.size()];
+            for (int i = 0; i < read.length; i++) {
+                read[i] = key.of(i);
+            }
+            values = read;
+        }
+        return values;
+    }
+
+    private synchronized Entry[] getPrefixes() {
+        if (prefixes == null) {
+            prefixes = sorted(false);
+        }
+        return prefixes;
+    }
+
+    private synchronized Entry[] getSuffixes() {
+        if (suffixes == null) {
+            suffixes = sorted(true);
+        }
+        return suffixes;
+    }
+
+    private Entry[] sorted(final boolean reversed) {
+        String[] all = getValues();
+        List<Entry> entries = new ArrayList<Entry>(all.length);
+        for (int i = 0; i < all.length; i++) {
+            if (all[i] != null) {
+                entries.add(new Entry(reversed ? reverse(all[i]) : all[i], i));
+            }
+        }
+        Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static String reverse(final String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final String key;
+
+        private final int position;
+
+        Entry(final String key, final int position) {
+            this.key = key;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            return key.compareTo(other.key);
+        }
+    }
+}
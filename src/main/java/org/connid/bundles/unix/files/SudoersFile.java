@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.connid.bundles.unix.utilities.Constants;
+import org.identityconnectors.common.StringUtil;
+
+/**
+ * The files of the sudoers directory the connector writes, read with one command. Every file is preceded by a file
+ * marker line with its name, see {@link org.connid.bundles.unix.commands.General#sudoersFiles}. A user or group
+ * without a file has no permissions, there is no error output to tell apart from a file's content.
+ */
+public class SudoersFile {
+
+    private static final String USER_PERMISSIONS_SUFFIX = "_user";
+
+    private static final String GROUP_PERMISSIONS_PREFIX = "%";
+
+    private static final String GROUP_PERMISSIONS_SUFFIX = "_group";
+
+    private final Map<String, String> userPermissions = new HashMap<String, String>();
+
+    private final Map<String, String> groupPermissions = new HashMap<String, String>();
+
+    private String fileName = null;
+
+    private StringBuilder content = null;
+
+    public SudoersFile(final List<String> output) {
+        for (String line : output) {
+            addLine(line);
+        }
+        addFile();
+    }
+
+    /**
+     * Takes the line of a file, or the marker starting the next file.
+     */
+    private void addLine(final String line) {
+        int marker = line.indexOf(Constants.SECTION_MARKER);
+        if (marker < 0) {
+            addContent(line);
+            return;
+        }
+        // a file without a trailing newline leaves its last line in front of the marker
+        addContent(line.substring(0, marker));
+        String[] header = line.substring(marker + Constants.SECTION_MARKER.length()).trim().split(" ", 2);
+        addFile();
+        if (Constants.FILE_SECTION.equals(header[0]) && header.length > 1) {
+            fileName = header[1].trim();
+            content = new StringBuilder();
+        }
+    }
+
+    /**
+     * Ends the file being read.
+     */
+    private void addFile() {
+        if (fileName == null) {
+            return;
+        }
+        if (fileName.endsWith(USER_PERMISSIONS_SUFFIX)) {
+            userPermissions.put(fileName.substring(0, fileName.length() - USER_PERMISSIONS_SUFFIX.length()),
+                    content.toString());
+        } else if (fileName.startsWith(GROUP_PERMISSIONS_PREFIX) && fileName.endsWith(GROUP_PERMISSIONS_SUFFIX)) {
+            groupPermissions.put(fileName.substring(GROUP_PERMISSIONS_PREFIX.length(),
+                    fileName.length() - GROUP_PERMISSIONS_SUFFIX.length()), content.toString());
+        }
+        fileName = null;
+        content = null;
+    }
+
+    private void addContent(final String line) {
+        if (content != null && StringUtil.isNotBlank(line)) {
+            content.append(line).append("\n");
+        }
+    }
+
+    /**
+     * @return the content of the user's file, null if there is none
+     */
+    public String getUserPermissions(final String username) {
+        return userPermissions.get(username);
+    }
+
+    /**
+     * @return the content of the group's file, null if there is none
+     */
+    public String getGroupPermissions(final String groupname) {
+        return groupPermissions.get(groupname);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.files;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.connid.bundles.unix.utilities.Constants;
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * Output of {@link org.connid.bundles.unix.commands.General#getentUserDetails}, split into its sections and joined
+ * per user, so that search does not need to ask the host for groups, shadow entry and permissions of every user.
+ */
+public class UserDetailsFile {
+
+    private PasswdFile passwdFile = null;
+
+    private GroupFile groupFile = null;
+
+    private ShadowFile shadowFile = null;
+
+    private SudoersFile sudoersFile = null;
+
+    public UserDetailsFile(final List<String> output) {
+        List<String> passwdLines = new ArrayList<String>();
+        List<String> shadowLines = new ArrayList<String>();
+        List<String> groupLines = new ArrayList<String>();
+        List<String> sudoersLines = new ArrayList<String>();
+        String section = null;
+
+        for (Iterator<String> it = output.iterator(); it.hasNext();) {
+            String line = it.next();
+            int marker = line.indexOf(Constants.SECTION_MARKER);
+            if (marker >= 0) {
+                String[] header = line.substring(marker + Constants.SECTION_MARKER.length()).trim().split(" ", 2);
+                if (Constants.FILE_SECTION.equals(header[0])) {
+                    // the sudoers files keep their markers, the sudoers file splits them
+                    addLine(section, line, passwdLines, shadowLines, groupLines, sudoersLines);
+                    continue;
+                }
+                // a file without a trailing newline leaves its last line in front of the marker
+                addLine(section, line.substring(0, marker), passwdLines, shadowLines, groupLines, sudoersLines);
+                section = header[0];
+                continue;
+            }
+            addLine(section, line, passwdLines, shadowLines, groupLines, sudoersLines);
+        }
+
+        passwdFile = new PasswdFile(passwdLines);
+        shadowFile = new ShadowFile(shadowLines);
+        groupFile = new GroupFile(groupLines);
+        sudoersFile = new SudoersFile(sudoersLines);
+    }
+
+    private void addLine(final String section, final String line, final List<String> passwdLines,
+            final List<String> shadowLines, final List<String> groupLines, final List<String> sudoersLines) {
+        if (Constants.SUDOERS_SECTION.equals(section)) {
+            sudoersLines.add(line);
+            return;
+        }
+        if (StringUtil.isBlank(line) || section == null) {
+            return;
+        }
+
+        if (Constants.PASSWD_SECTION.equals(section)) {
+            passwdLines.add(line);
+        } else if (Constants.SHADOW_SECTION.equals(section)) {
+            shadowLines.add(line);
+        } else if (Constants.GROUP_SECTION.equals(section)) {
+            groupLines.add(line);
+        }
+    }
+
+    public PasswdFile getPasswdFile() {
+        return passwdFile;
+    }
+
+    public GroupFile getGroupFile() {
+        return groupFile;
+    }
+
+    public List<String> getUserGroups(final String username) {
+        List<PasswdRow> passwdRows = passwdFile.searchRowByAttribute(Uid.NAME, username, false);
+        return passwdRows.isEmpty() ? null : getUserGroups(passwdRows.get(0));
+    }
+
+    /**
+     * @return the groups of the user, primary group first, null if there are none. The row does not need to be one of
+     *         the passwd section, users read after these details are joined the same way.
+     */
+    public List<String> getUserGroups(final PasswdRow passwdRow) {
+        return groupFile.getMembership().getUserGroups(passwdRow);
+    }
+
+    public ShadowStatus getShadowStatus(final String username) {
+        return shadowFile.getStatus(username);
+    }
+
+    public SudoersFile getSudoersFile() {
+        return sudoersFile;
+    }
+
+    public String getUserPermissions(final String username) {
+        return sudoersFile.getUserPermissions(username);
+    }
+
+    public String getGroupPermissions(final String groupname) {
+        return sudoersFile.getGroupPermissions(groupname);
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.methods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.connid.bundles.unix.UnixBatchResult;
+import org.connid.bundles.unix.UnixConnection;
+import org.connid.bundles.unix.UnixConnector;
+import org.connid.bundles.unix.UnixResult;
+import org.connid.bundles.unix.UnixResult.Operation;
+import org.connid.bundles.unix.files.BatchOutput;
+import org.connid.bundles.unix.files.SnapshotCache;
+import org.connid.bundles.unix.utilities.Utilities;
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeUtil;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.Uid;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Creates many objects with one remote script per batch instead of several commands per object. Every object gets
+ * the commands {@link UnixCreate} would run, framed by markers, so that one failing object does not stop the others
+ * and its error is reported like a single create would throw it. The passwords of a batch are set by one chpasswd
+ * after the script, the activation status of those users by one more script after that.
+ */
+public class UnixBatchCreate {
+
+    private static final Log LOG = Log.getLog(UnixBatchCreate.class);
+
+    private final ObjectClass objectClass;
+
+    private final UnixConnection unixConnection;
+
+    private final List<Set<Attribute>> objects;
+
+    public UnixBatchCreate(final ObjectClass oc, final UnixConnection unixConnection,
+            final List<Set<Attribute>> objects) {
+        this.objectClass = oc;
+        this.unixConnection = unixConnection;
+        this.objects = objects;
+    }
+
+    /**
+     * @return the result of every object, in the order of the objects
+     */
+    public List<UnixBatchResult> create() {
+        if (!objectClass.equals(ObjectClass.ACCOUNT) && (!objectClass.equals(ObjectClass.GROUP))) {
+            throw new IllegalArgumentException("Wrong object class");
+        }
+        List<UnixBatchResult> results = new ArrayList<UnixBatchResult>();
+        int batchSize = unixConnection.getUnixConfiguration().getBatchSize();
+        try {
+            for (int from = 0; from < objects.size(); from += batchSize) {
+                results.addAll(createBatch(objects.subList(from, Math.min(from + batchSize, objects.size()))));
+            }
+        } finally {
+            SnapshotCache.forHost(unixConnection.getUnixConfiguration()).invalidate();
+        }
+        return results;
+    }
+
+    private List<UnixBatchResult> createBatch(final List<Set<Attribute>> batch) {
+        UnixBatchResult[] results = new UnixBatchResult[batch.size()];
+        String[] names = new String[batch.size()];
+        List<String> commands = new ArrayList<String>();
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                names[i] = UnixCreate.getObjectName(objectClass, batch.get(i));
+                commands.add(buildCommand(names[i], batch.get(i)));
+                positions.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = UnixBatchResult.failure(names[i], new ConnectorException(e.getMessage(), e));
+            } catch (JSchException e) {
+                results[i] = UnixBatchResult.failure(names[i], new ConnectorException(e.getMessage(), e));
+            } catch (IOException e) {
+                results[i] = UnixBatchResult.failure(names[i], new ConnectorException(e.getMessage(), e));
+            }
+        }
+        if (commands.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        BatchOutput output;
+        try {
+            output = runBatch(commands);
+        } catch (ConnectorException e) {
+            unknownAll(names, results, positions, e);
+            return Arrays.asList(results);
+        }
+        Map<String, String> passwords = new LinkedHashMap<String, String>();
+        for (int command = 0; command < commands.size(); command++) {
+            int i = positions.get(command);
+            if (!output.isFinished(command)) {
+                results[i] = UnixBatchResult.unknown(names[i], new ConnectorException(
+                        "Could not tell whether " + names[i] + " was created, the batch ended before it"));
+                continue;
+            }
+            try {
+                new UnixResult(output.getExitStatus(command), output.getOutput(command), output.getOutput(command))
+                        .checkResult(objectClass.equals(ObjectClass.ACCOUNT) ? Operation.USERADD
+                                : Operation.GROUPADD, objectClass.equals(ObjectClass.ACCOUNT)
+                                ? "Could not create user" : "Could not create group", LOG);
+                results[i] = UnixBatchResult.success(new Uid(names[i]));
+            } catch (ConnectorException e) {
+                results[i] = UnixBatchResult.failure(names[i], e);
+                continue;
+            }
+            if (objectClass.equals(ObjectClass.ACCOUNT) && hasPassword(batch.get(i))) {
+                passwords.put(names[i], Utilities.getPlainPassword(AttributeUtil.getPasswordValue(batch.get(i))));
+            }
+        }
+        if (!passwords.isEmpty()) {
+            processPasswords(batch, names, results, passwords);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return the commands of the object, for a user without password followed by its activation status
+     */
+    private String buildCommand(final String name, final Set<Attribute> attrs) throws JSchException, IOException {
+        String command = UnixCreate.buildCreateCommand(objectClass, name, attrs);
+        if (objectClass.equals(ObjectClass.ACCOUNT) && !hasPassword(attrs)) {
+            String activationCommand = UnixCommon.buildActivationAndLockoutCommand(unixConnection, name, attrs);
+            if (StringUtil.isNotBlank(activationCommand)) {
+                // a failed create must not run the activation, nor hide its exit status
+                command = "{ " + command + "; } && { " + activationCommand + "; }";
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Sets the passwords of the created users with one chpasswd, then their activation status with one more script,
+     * setting a password would undo a lock set before.
+     */
+    private void processPasswords(final List<Set<Attribute>> batch, final String[] names,
+            final UnixBatchResult[] results, final Map<String, String> passwords) {
+        Map<String, ConnectorException> failures;
+        try {
+            failures = UnixCommon.setPasswords(unixConnection, passwords);
+        } catch (JSchException e) {
+            LOG.error(e, "error during batch create operation");
+            failures = failEvery(passwords.keySet(), new ConnectorException(e.getMessage(), e));
+        } catch (IOException e) {
+            LOG.error(e, "error during batch create operation");
+            failures = failEvery(passwords.keySet(), new ConnectorException(e.getMessage(), e));
+        } catch (ConnectorException e) {
+            // like a host requiring a tty, the users are created but none of them got a password
+            failures = failEvery(passwords.keySet(), e);
+        }
+
+        List<String> commands = new ArrayList<String>();
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (names[i] == null || !passwords.containsKey(names[i])) {
+                continue;
+            }
+            if (failures.containsKey(names[i])) {
+                results[i] = UnixBatchResult.failure(names[i], failures.get(names[i]));
+                continue;
+            }
+            try {
+                String activationCommand = UnixCommon.buildActivationAndLockoutCommand(unixConnection, names[i],
+                        batch.get(i));
+                if (StringUtil.isNotBlank(activationCommand)) {
+                    commands.add(activationCommand);
+                    positions.add(i);
+                }
+            } catch (JSchException e) {
+                results[i] = UnixBatchResult.failure(names[i], new ConnectorException(e.getMessage(), e));
+            } catch (IOException e) {
+                results[i] = UnixBatchResult.failure(names[i], new ConnectorException(e.getMessage(), e));
+            }
+        }
+        if (commands.isEmpty()) {
+            return;
+        }
+
+        BatchOutput output;
+        try {
+            output = runBatch(commands);
+        } catch (ConnectorException e) {
+            unknownAll(names, results, positions, e);
+            return;
+        }
+        for (int command = 0; command < commands.size(); command++) {
+            int i = positions.get(command);
+            if (!output.isFinished(command)) {
+                results[i] = UnixBatchResult.unknown(names[i], new ConnectorException("Could not tell whether the "
+                        + "activation status of " + names[i] + " was changed, the batch ended before it"));
+                continue;
+            }
+            try {
+                new UnixResult(output.getExitStatus(command), output.getOutput(command), output.getOutput(command))
+                        .checkResult(Operation.USERMOD, "Could not change user activation status", LOG);
+            } catch (ConnectorException e) {
+                results[i] = UnixBatchResult.failure(names[i], e);
+            }
+        }
+    }
+
+    /**
+     * Every command of the script may take as long as a single command would.
+     */
+    private BatchOutput runBatch(final List<String> commands) {
+        try {
+            UnixResult result = unixConnection.execute(UnixConnector.getCommandGenerator().batch(commands),
+                    unixConnection.getUnixConfiguration().getReadTimeout() * commands.size());
+            return new BatchOutput(Arrays.asList(result.getOutput().split("\n")));
+        } catch (JSchException e) {
+            LOG.error(e, "error during batch create operation");
+            throw new ConnectorException(e.getMessage(), e);
+        } catch (IOException e) {
+            LOG.error(e, "error during batch create operation");
+            throw new ConnectorException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Leaves the objects at the positions unknown, a batch that timed out or broke off may have written some of them
+     * and the host may still be writing others.
+     */
+    private static void unknownAll(final String[] names, final UnixBatchResult[] results,
+            final List<Integer> positions, final ConnectorException error) {
+        for (int i : positions) {
+            results[i] = UnixBatchResult.unknown(names[i], error);
+        }
+    }
+
+    private static Map<String, ConnectorException> failEvery(final Set<String> names,
+            final ConnectorException error) {
+        Map<String, ConnectorException> failures = new HashMap<String, ConnectorException>();
+        for (String name : names) {
+            failures.put(name, error);
+        }
+        return failures;
+    }
+
+    private static boolean hasPassword(final Set<Attribute> attrs) {
+        return StringUtil.isNotBlank(Utilities.getPlainPassword(AttributeUtil.getPasswordValue(attrs)));
+    }
+}
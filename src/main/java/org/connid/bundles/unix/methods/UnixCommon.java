@@ -17,9 +17,12 @@
 package org.connid.bundles.unix.methods;
 
 import java.io.IOException;
-import java.net.ConnectException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.connid.bundles.unix.UnixConnection;
@@ -28,9 +31,11 @@ import org.connid.bundles.unix.UnixResult;
 import org.connid.bundles.unix.UnixResult.Operation;
 import org.connid.bundles.unix.schema.SchemaAccountAttribute;
 import org.connid.bundles.unix.schema.SchemaGroupAttribute;
-import org.connid.bundles.unix.utilities.Utilities;
+import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.InvalidPasswordException;
 import org.identityconnectors.framework.common.objects.Attribute;
 import org.identityconnectors.framework.common.objects.AttributeUtil;
 import org.identityconnectors.framework.common.objects.OperationalAttributes;
@@ -41,29 +46,59 @@ public class UnixCommon {
 
     private static final Log LOG = Log.getLog(UnixCommon.class);
 
-    public static void processPassword(UnixConnection unixConnection, String username, Set<Attribute> attrs)
-            throws JSchException, IOException, ConnectException {
-        final String password = Utilities.getPlainPassword(AttributeUtil.getPasswordValue(attrs));
-
-        if (StringUtil.isNotBlank(password)) {
-            UnixResult result = unixConnection.execute(
-                    UnixConnector.getCommandGenerator().setPassword(username, password), password);
-
-            result.checkResult(Operation.PASSWD, "Could not set password", LOG);
+    /**
+     * Sets the passwords with one chpasswd reading a "user:password" line per user from its standard input, no
+     * prompt is waited for. If chpasswd fails without naming the line of a user every user fails.
+     *
+     * @return the error of every user whose password was not set
+     */
+    public static Map<String, ConnectorException> setPasswords(UnixConnection unixConnection,
+            Map<String, String> passwords) throws JSchException, IOException {
+        Map<String, ConnectorException> failures = new LinkedHashMap<String, ConnectorException>();
+        List<String> usernames = new ArrayList<String>();
+        StringBuilder input = new StringBuilder();
+        for (Map.Entry<String, String> entry : passwords.entrySet()) {
+            try {
+                input.append(passwordLine(entry.getKey(), entry.getValue()));
+                usernames.add(entry.getKey());
+            } catch (InvalidPasswordException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        if (usernames.isEmpty()) {
+            return failures;
         }
 
+        UnixResult result = unixConnection.executeWithInput(UnixConnector.getCommandGenerator().setPasswords(),
+                input.toString());
+        if (result.getExitStatus() == 0) {
+            return failures;
+        }
+        Map<String, String> errors = EvaluateCommandsResultOutput.evaluatePasswordFailures(usernames,
+                result.getOutput());
+        for (String username : usernames) {
+            if (errors.isEmpty() || errors.containsKey(username)) {
+                String error = errors.isEmpty() ? result.getOutput().trim() : errors.get(username);
+                try {
+                    new UnixResult(result.getExitStatus(), error, error)
+                            .checkResult(Operation.PASSWD, "Could not set password", LOG);
+                    failures.put(username, new ConnectorException("Could not set password: " + error));
+                } catch (ConnectorException e) {
+                    failures.put(username, e);
+                }
+            }
+        }
+        return failures;
     }
 
-    public static void resetPassword(UnixConnection unixConnection, String username, Set<Attribute> attrs)
-            throws JSchException, IOException {
-        if (AttributeUtil.find(OperationalAttributes.PASSWORD_NAME, attrs) == null) {
-            return;
+    /**
+     * @return the line of the user for the standard input of chpasswd
+     */
+    static String passwordLine(String username, String password) {
+        if (password.indexOf('\n') >= 0 || password.indexOf('\r') >= 0) {
+            throw new InvalidPasswordException("Password must not contain a line break");
         }
-
-        UnixResult result = unixConnection.execute(UnixConnector.getCommandGenerator()
-                .resetPassword(username));
-        result.checkResult(Operation.PASSWD, "Could not reset password", LOG);
-
+        return username + ":" + password + "\n";
     }
 
     public static void appendCommand(StringBuilder commandBuilder, String command) {
@@ -175,6 +210,17 @@ public class UnixCommon {
         return null;
     }
 
+    /**
+     * @return the commands setting the activation and lockout status of the user, blank if there are none
+     */
+    static String buildActivationAndLockoutCommand(final UnixConnection unixConnection, final String username,
+            final Set<Attribute> attrs) throws JSchException, IOException {
+        StringBuilder activationCommand = new StringBuilder();
+        appendCommand(activationCommand, buildActivationCommand(unixConnection, username, attrs));
+        appendCommand(activationCommand, buildLockoutCommand(unixConnection, username, attrs));
+        return activationCommand.toString();
+    }
+
     private static String formatDate(long milis) {
         Date date = new Date(milis);
         SimpleDateFormat dateFormat = new SimpleDateFormat("YYYY-MM-DD");
@@ -22,8 +22,9 @@ import javax.naming.CommunicationException;
 
 import org.connid.bundles.unix.UnixConnection;
 import org.connid.bundles.unix.UnixConnector;
-import org.connid.bundles.unix.UnixResult;
 import org.connid.bundles.unix.UnixResult.Operation;
+import org.connid.bundles.unix.files.SnapshotCache;
+import org.connid.bundles.unix.utilities.Utilities;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
@@ -65,12 +66,33 @@ public class UnixCreate {
         } catch (IOException e) {
             LOG.error(e, "error during create operation");
             throw new ConnectorException(e.getMessage(), e);
+        } finally {
+            SnapshotCache.forHost(unixConnection.getUnixConfiguration()).invalidate();
         }
     }
 
     private Uid doCreate() throws JSchException, IOException {
+        String objectName = getObjectName(objectClass, attrs);
+        WritePlan plan = new WritePlan();
+        if (objectClass.equals(ObjectClass.ACCOUNT)) {
+            plan.step(buildCreateCommand(objectClass, objectName, attrs), Operation.USERADD, "Could not create user");
+            plan.password(objectName, Utilities.getPlainPassword(AttributeUtil.getPasswordValue(attrs)));
+            // after the password, setting it would undo a lock
+            plan.step(UnixCommon.buildActivationAndLockoutCommand(unixConnection, objectName, attrs),
+                    Operation.USERMOD, "Could not change user activation status");
+        } else {
+            plan.step(buildCreateCommand(objectClass, objectName, attrs), Operation.GROUPADD,
+                    "Could not create group");
+        }
+        plan.execute(unixConnection);
 
+        return new Uid(objectName);
+    }
 
+    /**
+     * @return the name of the object to create
+     */
+    static String getObjectName(final ObjectClass objectClass, final Set<Attribute> attrs) {
         if (!objectClass.equals(ObjectClass.ACCOUNT) && (!objectClass.equals(ObjectClass.GROUP))) {
             throw new IllegalArgumentException("Wrong object class");
         }
@@ -87,46 +109,29 @@ public class UnixCreate {
         if (name == null || StringUtil.isBlank(name.getNameValue())) {
             throw new IllegalArgumentException("No Name attribute provided in the attributes");
         }
+        return name.getNameValue();
+    }
 
-        String objectName = name.getNameValue();
+    /**
+     * @return the useradd or groupadd command followed by the public key and permission commands, the password and
+     *         the activation status of a user are set afterwards
+     */
+    static String buildCreateCommand(final ObjectClass objectClass, final String objectName,
+            final Set<Attribute> attrs) throws JSchException, IOException {
+        StringBuilder commandToExecute = new StringBuilder();
         if (objectClass.equals(ObjectClass.ACCOUNT)) {
-            StringBuilder commandToExecute = new StringBuilder();
             String addCommand = UnixConnector.getCommandGenerator().createUser(objectName, attrs);
             UnixCommon.appendCommand(commandToExecute, addCommand);
 
             UnixCommon.appendCreateOrUpdatePublicKeyCommand(commandToExecute, objectName, attrs, false);
 
             UnixCommon.appendCreateOrUpdatePermissions(commandToExecute, objectName, attrs, true);
-
-            UnixResult result = unixConnection.execute(commandToExecute.toString());
-
-            result.checkResult(Operation.USERADD, "Could not create user", LOG);
-
-            UnixCommon.processPassword(unixConnection, objectName, attrs);
-            processActivation(objectName);
-
-        } else if (objectClass.equals(ObjectClass.GROUP)) {
-            StringBuilder commandToExecute = new StringBuilder();
+        } else {
             String addCommand = UnixConnector.getCommandGenerator().createGroup(objectName, attrs);
             UnixCommon.appendCommand(commandToExecute, addCommand);
 
             UnixCommon.appendCreateOrUpdatePermissions(commandToExecute, objectName, attrs, false);
-
-            UnixResult result = unixConnection.execute(commandToExecute.toString());
-            result.checkResult(Operation.GROUPADD, "Could not create group", LOG);
-        }
-
-
-        return new Uid(objectName);
-    }
-
-    private void processActivation(String username) throws JSchException, IOException {
-        StringBuilder activationCommand = new StringBuilder();
-        UnixCommon.appendCommand(activationCommand, UnixCommon.buildActivationCommand(unixConnection, username, attrs));
-        UnixCommon.appendCommand(activationCommand, UnixCommon.buildLockoutCommand(unixConnection, username, attrs));
-        if (StringUtil.isNotBlank(activationCommand.toString())) {
-            UnixResult result = unixConnection.execute(activationCommand.toString());
-            result.checkResult(Operation.USERMOD, "Could not change user activation status", LOG);
         }
+        return commandToExecute.toString();
     }
 }
@@ -23,6 +23,7 @@ import org.connid.bundles.unix.UnixConnection;
 import org.connid.bundles.unix.UnixConnector;
 import org.connid.bundles.unix.UnixResult;
 import org.connid.bundles.unix.UnixResult.Operation;
+import org.connid.bundles.unix.files.SnapshotCache;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
@@ -61,7 +62,9 @@ public class UnixDelete {
 		} catch (IOException e) {
 			LOG.error(e, "error during delete operation");
 			throw new ConnectionBrokenException(e);
-		} 
+		} finally {
+			SnapshotCache.forHost(unixConnection.getUnixConfiguration()).invalidate();
+		}
 	}
 
 	private void doDelete() throws IOException, InterruptedException, JSchException {
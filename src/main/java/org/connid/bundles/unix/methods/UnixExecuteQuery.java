@@ -89,7 +89,7 @@ public class UnixExecuteQuery {
 			new Search(connection, handler, objectClass, filter, options).containsSearch();
 			break;
 		case OR:
-			new Search(connection, handler, objectClass, filter.getFirstOperand(), options).orSearch();
+			new Search(connection, handler, objectClass, filter, options).orSearch();
 			break;
 		case AND:
 			new Search(connection, handler, objectClass, filter, options).andSearch();
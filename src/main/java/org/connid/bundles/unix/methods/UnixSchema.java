@@ -50,6 +50,13 @@ public class UnixSchema {
 	        	attrBuilder.setRequired(attr.isRequired());
 	        	attrBuilder.setType(attr.getType());
 	        	attrBuilder.setMultiValued(attr.getOccurence() == -1);
+	        	if (attr == SchemaGroupAttribute.MEMBERS) {
+	        		// read from passwd and group, changed through the groups of the accounts
+	        		attrBuilder.setCreateable(false);
+	        		attrBuilder.setUpdateable(false);
+	        		// every user has to be read to list them
+	        		attrBuilder.setReturnedByDefault(false);
+	        	}
 	        	attributes.add(attrBuilder.build());
 	        }
 	        
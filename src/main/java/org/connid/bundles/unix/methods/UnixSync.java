@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.methods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.connid.bundles.unix.UnixConnection;
+import org.connid.bundles.unix.UnixConnector;
+import org.connid.bundles.unix.UnixResult;
+import org.connid.bundles.unix.UnixResult.Operation;
+import org.connid.bundles.unix.files.UserDetailsFile;
+import org.connid.bundles.unix.search.Search;
+import org.connid.bundles.unix.utilities.Constants;
+import org.connid.bundles.unix.utilities.SyncState;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncDeltaBuilder;
+import org.identityconnectors.framework.common.objects.SyncDeltaType;
+import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Live sync by comparing the host with the state stored in the token. As long as the checksums of passwd, shadow,
+ * group and the sudoers directory do not change the host only sends the checksums back, otherwise all objects are
+ * rebuilt and only those whose hash differs from the token are reported.
+ */
+public class UnixSync {
+
+    private static final Log LOG = Log.getLog(UnixSync.class);
+
+    private UnixConnection unixConnection = null;
+
+    private ObjectClass objectClass = null;
+
+    public UnixSync(final UnixConnection unixConnection, final ObjectClass objectClass) {
+        if (!ObjectClass.ACCOUNT.equals(objectClass) && !ObjectClass.GROUP.equals(objectClass)
+                && !ObjectClass.ALL.equals(objectClass)) {
+            throw new IllegalArgumentException("Unsupported object class " + objectClass);
+        }
+        this.unixConnection = unixConnection;
+        this.objectClass = objectClass;
+    }
+
+    public final void sync(final SyncToken token, final SyncResultsHandler handler) {
+        try {
+            doSync(token, handler);
+        } catch (JSchException e) {
+            throw new ConnectorException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new ConnectorException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            throw new ConnectionBrokenException(e);
+        }
+    }
+
+    public final SyncToken getLatestSyncToken() {
+        try {
+            return readState(new SyncState(null), null).encode();
+        } catch (JSchException e) {
+            throw new ConnectorException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new ConnectorException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            throw new ConnectionBrokenException(e);
+        }
+    }
+
+    private void doSync(final SyncToken token, final SyncResultsHandler handler)
+            throws JSchException, IOException, InterruptedException {
+        SyncState previous = SyncState.decode(token);
+        List<SyncDeltaBuilder> deltas = new ArrayList<SyncDeltaBuilder>();
+        SyncState current = readState(previous, deltas);
+
+        if (current == null) {
+            LOG.ok("No file changed since the last sync");
+            current = previous;
+        } else {
+            for (ObjectClass syncedClass : syncedClasses()) {
+                Map<String, String> currentHashes = current.getHashes(syncedClass);
+                for (String name : previous.getHashes(syncedClass).keySet()) {
+                    if (!currentHashes.containsKey(name)) {
+                        deltas.add(new SyncDeltaBuilder().setDeltaType(SyncDeltaType.DELETE)
+                                .setObjectClass(syncedClass).setUid(new Uid(name)));
+                    }
+                }
+            }
+        }
+
+        SyncToken newToken = current.encode();
+        // until the last delta is handled a restart has to begin from the previous token again
+        SyncToken deltaToken = token == null ? newToken : token;
+        for (int i = 0; i < deltas.size(); i++) {
+            SyncDelta delta = deltas.get(i).setToken(i == deltas.size() - 1 ? newToken : deltaToken).build();
+            LOG.ok("Sync delta: {0}", delta);
+            if (!handler.handle(delta)) {
+                return;
+            }
+        }
+        if (handler instanceof SyncTokenResultsHandler) {
+            ((SyncTokenResultsHandler) handler).handleResult(newToken);
+        }
+    }
+
+    /**
+     * @return the current state, null if the checksums are still those of the previous state
+     */
+    private SyncState readState(final SyncState previous, final List<SyncDeltaBuilder> deltas)
+            throws JSchException, IOException, InterruptedException {
+        UnixResult result = unixConnection.executeRead(
+                UnixConnector.getCommandGenerator().syncSnapshot(previous.getChecksums()));
+        result.checkResult(Operation.GETENET, "Sync failed", LOG);
+        List<String> output = Arrays.asList(result.getOutput().split("\n"));
+
+        String checksums = null;
+        boolean changed = false;
+        for (int i = 0; i < output.size(); i++) {
+            String line = output.get(i).trim();
+            if (line.equals(Constants.SECTION_MARKER + " " + Constants.CHECKSUMS_SECTION) && i + 1 < output.size()) {
+                checksums = output.get(i + 1).trim();
+            } else if (line.equals(Constants.SECTION_MARKER + " " + Constants.PASSWD_SECTION)) {
+                changed = true;
+                break;
+            }
+        }
+        if (!changed) {
+            return null;
+        }
+
+        UserDetailsFile details = new UserDetailsFile(output);
+        SyncState current = new SyncState(checksums);
+        for (ObjectClass stateClass : Arrays.asList(ObjectClass.ACCOUNT, ObjectClass.GROUP)) {
+            collectChanges(details, stateClass, previous.getHashes(stateClass), current.getHashes(stateClass),
+                    deltas != null && syncedClasses().contains(stateClass) ? deltas : null);
+        }
+        return current;
+    }
+
+    /**
+     * Hashes all objects of the class into the current state and adds a delta for every one not in the previous
+     * state with the same hash.
+     */
+    private void collectChanges(final UserDetailsFile details, final ObjectClass stateClass,
+            final Map<String, String> previousHashes, final Map<String, String> currentHashes,
+            final List<SyncDeltaBuilder> deltas) throws JSchException, IOException, InterruptedException {
+        new Search(unixConnection, new ResultsHandler() {
+
+            @Override
+            public boolean handle(final ConnectorObject object) {
+                String name = object.getUid().getUidValue();
+                String hash = SyncState.hash(object);
+                currentHashes.put(name, hash);
+                String previousHash = previousHashes.get(name);
+                if (deltas != null && !hash.equals(previousHash)) {
+                    deltas.add(new SyncDeltaBuilder()
+                            .setDeltaType(previousHash == null ? SyncDeltaType.CREATE : SyncDeltaType.UPDATE)
+                            .setObjectClass(stateClass).setUid(object.getUid()).setObject(object));
+                }
+                return true;
+            }
+        }, stateClass, details).searchDetails();
+    }
+
+    private Set<ObjectClass> syncedClasses() {
+        if (ObjectClass.ALL.equals(objectClass)) {
+            return new HashSet<ObjectClass>(Arrays.asList(ObjectClass.ACCOUNT, ObjectClass.GROUP));
+        }
+        return new HashSet<ObjectClass>(Arrays.asList(objectClass));
+    }
+}
@@ -25,12 +25,13 @@ import javax.naming.CommunicationException;
 
 import org.connid.bundles.unix.UnixConnection;
 import org.connid.bundles.unix.UnixConnector;
-import org.connid.bundles.unix.UnixResult;
 import org.connid.bundles.unix.UnixResult.Operation;
 import org.connid.bundles.unix.commands.General;
 import org.connid.bundles.unix.files.PasswdRow;
+import org.connid.bundles.unix.files.SnapshotCache;
 import org.connid.bundles.unix.schema.SchemaAccountAttribute;
 import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
+import org.connid.bundles.unix.utilities.Utilities;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
@@ -40,6 +41,7 @@ import org.identityconnectors.framework.common.objects.Attribute;
 import org.identityconnectors.framework.common.objects.AttributeUtil;
 import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationalAttributes;
 import org.identityconnectors.framework.common.objects.Uid;
 
 import com.jcraft.jsch.ChannelShell;
@@ -74,6 +76,8 @@ public class UnixUpdate {
         } catch (IOException e) {
             LOG.error(e, "error during update operation");
             throw new ConnectorException(e.getMessage(), e);
+        } finally {
+            SnapshotCache.forHost(unixConnection.getUnixConfiguration()).invalidate();
         }
     }
 
@@ -86,6 +90,8 @@ public class UnixUpdate {
         } catch (IOException e) {
             LOG.error(e, "error during update operation");
             throw new ConnectorException(e.getMessage(), e);
+        } finally {
+            SnapshotCache.forHost(unixConnection.getUnixConfiguration()).invalidate();
         }
     }
 
@@ -128,11 +134,6 @@ public class UnixUpdate {
             String modCommand = UnixConnector.getCommandGenerator().updateUser(uid.getUidValue(), attrs, isAdd);
             UnixCommon.appendCommand(commandBuilder, modCommand);
 
-            String activation = UnixCommon.buildActivationCommand(unixConnection, newUserNameValue, attrs);
-            UnixCommon.appendCommand(commandBuilder, activation);
-            UnixCommon.appendCommand(commandBuilder,
-                    UnixCommon.buildLockoutCommand(unixConnection, newUserNameValue, attrs));
-
             if (newUserName != null) {
                 String oldUser = unixConnection
                         .executeRead(UnixConnector.getCommandGenerator().userExists(uid.getUidValue())).getOutput();
@@ -158,23 +159,26 @@ public class UnixUpdate {
                 }
             }
 
-            if (StringUtil.isNotBlank(commandBuilder.toString())) {
-                UnixResult result = unixConnection.execute(commandBuilder.toString());
-                result.checkResult(Operation.USERMOD, "Could not modify user", LOG);
-            }
+            WritePlan plan = new WritePlan();
+            plan.step(commandBuilder.toString(), Operation.USERMOD, "Could not modify user");
             if (isAdd) {
-                UnixCommon.processPassword(unixConnection, newUserNameValue, attrs);
-            } else {
-                UnixCommon.resetPassword(unixConnection, newUserNameValue, attrs);
+                plan.password(newUserNameValue, Utilities.getPlainPassword(AttributeUtil.getPasswordValue(attrs)));
+            } else if (AttributeUtil.find(OperationalAttributes.PASSWORD_NAME, attrs) != null) {
+                plan.step(UnixConnector.getCommandGenerator().resetPassword(newUserNameValue), Operation.PASSWD,
+                        "Could not reset password");
             }
+            // after the password, setting it would undo a lock
+            plan.step(UnixCommon.buildActivationAndLockoutCommand(unixConnection, newUserNameValue, attrs),
+                    Operation.USERMOD, "Could not modify user");
+            plan.execute(unixConnection);
 
         } else if (objectClass.equals(ObjectClass.GROUP)) {
             StringBuilder commandBuilder = new StringBuilder();
             String modCommand = UnixConnector.getCommandGenerator().updateGroup(uid.getUidValue(), attrs);
             UnixCommon.appendCommand(commandBuilder, modCommand);
             UnixCommon.appendCreateOrUpdatePermissions(commandBuilder, uid.getUidValue(), attrs, false);
-            UnixResult result = unixConnection.execute(commandBuilder.toString());
-            result.checkResult(Operation.GROUPMOD, "Could not modify group", LOG);
+            new WritePlan().step(commandBuilder.toString(), Operation.GROUPMOD, "Could not modify group")
+                    .execute(unixConnection);
         }
         return new Uid(newUserNameValue);
     }
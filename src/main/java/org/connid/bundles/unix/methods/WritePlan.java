@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.methods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.connid.bundles.unix.UnixConnection;
+import org.connid.bundles.unix.UnixConnector;
+import org.connid.bundles.unix.UnixResult;
+import org.connid.bundles.unix.UnixResult.Operation;
+import org.connid.bundles.unix.files.BatchOutput;
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * The changes of one object run as a single remote script instead of one command each. The steps run in the order
+ * they were added, the first failing one stops the script and is reported with the exception the command would have
+ * thrown on its own, or a plain one if the command alone would not have failed. A password is written to chpasswd
+ * through the standard input of the script, never as part of the command. Such a script runs under the pty when the
+ * pty setting is on, as every other command does, only the persistent shell is left out.
+ */
+final class WritePlan {
+
+    private static final Log LOG = Log.getLog(WritePlan.class);
+
+    private final List<String> commands = new ArrayList<String>();
+
+    private final List<Operation> operations = new ArrayList<Operation>();
+
+    private final List<String> failures = new ArrayList<String>();
+
+    private int inputStep = -1;
+
+    private String input = null;
+
+    /**
+     * Adds the command unless it is blank.
+     *
+     * @param failure the message of the exception if the command fails
+     */
+    WritePlan step(final String command, final Operation operation, final String failure) {
+        if (StringUtil.isNotBlank(command)) {
+            commands.add(command);
+            operations.add(operation);
+            failures.add(failure);
+        }
+        return this;
+    }
+
+    /**
+     * Adds setting the password of the user, nothing if it is blank.
+     */
+    WritePlan password(final String username, final String password) {
+        if (StringUtil.isBlank(password)) {
+            return this;
+        }
+        if (input != null) {
+            throw new IllegalStateException("Only one step of a plan can read the standard input");
+        }
+        input = UnixCommon.passwordLine(username, password);
+        inputStep = commands.size();
+        return step(UnixConnector.getCommandGenerator().setPasswords(), Operation.PASSWD, "Could not set password");
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Runs all steps with one remote execution.
+     *
+     * @throws ConnectorException the error of the first step that failed
+     */
+    void execute(final UnixConnection unixConnection) throws JSchException, IOException {
+        if (commands.isEmpty()) {
+            return;
+        }
+        String script = UnixConnector.getCommandGenerator().plan(commands, inputStep);
+        UnixResult result = input == null
+                ? unixConnection.execute(script)
+                : unixConnection.executeWithInput(script, input);
+        BatchOutput output = new BatchOutput(Arrays.asList(result.getOutput().split("\n")));
+        for (int step = 0; step < commands.size(); step++) {
+            if (!output.isFinished(step)) {
+                String error = failures.get(step) + ": the script ended before this step";
+                LOG.error(error);
+                throw new ConnectorException(error);
+            }
+            int exitStatus = output.getExitStatus(step);
+            String stepOutput = output.getOutput(step);
+            new UnixResult(exitStatus, stepOutput, stepOutput).checkResult(operations.get(step), failures.get(step),
+                    LOG);
+            if (exitStatus != 0 && step < commands.size() - 1) {
+                // an exit status the command alone would get away with still kept the later steps from running
+                String error = failures.get(step) + ": " + stepOutput;
+                LOG.error(error);
+                throw new ConnectorException(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.methods;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.connid.bundles.unix.sshmanagement.ReadOutputExecutor;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * Writes queued to run in the background. The writes of one object run one after the other in the order they were
+ * queued, the writes of different objects run at the same time, but never more than a number of them. An object is
+ * known by its object class and name, a write renaming it is not ordered with the writes queued for the new name
+ * before it finished.
+ */
+public final class WriteQueue {
+
+    private static final Log LOG = Log.getLog(WriteQueue.class);
+
+    private final int maxInFlight;
+
+    /**
+     * The writes of every object with a write running or waiting, the first one is running or about to.
+     */
+    private final Map<String, Deque<FutureTask<Uid>>> objects = new HashMap<String, Deque<FutureTask<Uid>>>();
+
+    /**
+     * The objects whose first write waits for a free slot.
+     */
+    private final Deque<String> ready = new ArrayDeque<String>();
+
+    private int inFlight = 0;
+
+    private int pending = 0;
+
+    public WriteQueue(final int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static String key(final ObjectClass oc, final String name) {
+        return oc.getObjectClassValue() + ":" + name;
+    }
+
+    /**
+     * Queues the write after the writes already queued for the object.
+     *
+     * @return the Uid the write returns, its failure as cause of the execution exception
+     */
+    public Future<Uid> submit(final String key, final Callable<Uid> write) {
+        FutureTask<Uid> task = new FutureTask<Uid>(write);
+        synchronized (this) {
+            Deque<FutureTask<Uid>> writes = objects.get(key);
+            if (writes == null) {
+                writes = new ArrayDeque<FutureTask<Uid>>();
+                objects.put(key, writes);
+                ready.addLast(key);
+            }
+            writes.addLast(task);
+            pending++;
+            dispatch();
+        }
+        return task;
+    }
+
+    /**
+     * Waits until every write queued so far, and every write queued meanwhile, has finished. Failures are left to
+     * the futures of the writes.
+     */
+    public synchronized void flush() {
+        if (pending > 0) {
+            LOG.ok("Waiting for {0} queued writes", pending);
+        }
+        try {
+            while (pending > 0) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionBrokenException(e);
+        }
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Starts the first write of the ready objects while there are free slots.
+     */
+    private void dispatch() {
+        while (inFlight < maxInFlight && !ready.isEmpty()) {
+            final String key = ready.pollFirst();
+            final FutureTask<Uid> task = objects.get(key).peekFirst();
+            inFlight++;
+            ReadOutputExecutor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    try {
+                        task.run();
+                    } finally {
+                        finished(key);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(final String key) {
+        inFlight--;
+        pending--;
+        Deque<FutureTask<Uid>> writes = objects.get(key);
+        writes.pollFirst();
+        if (writes.isEmpty()) {
+            objects.remove(key);
+        } else {
+            ready.addLast(key);
+        }
+        notifyAll();
+        dispatch();
+    }
+}
@@ -25,6 +25,7 @@ public enum SchemaGroupAttribute {
 	KEY("key", "-K", false, String.class, -1),
 	GID("gid", "-g", false, Integer.class, 1),
 	PERMISSIONS("permissions", "-g", false, String.class, 1),
+	MEMBERS("members", "", false, String.class, -1),
 	SYSTEM_ACCOUNT("systemAccount", "-r", false, Boolean.class, 1);
 	
 	private String name;
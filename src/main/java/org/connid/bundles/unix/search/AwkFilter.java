@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.connid.bundles.unix.files.GroupRowElements;
+import org.connid.bundles.unix.files.PasswdRowElements;
+import org.connid.bundles.unix.schema.SchemaAccountAttribute;
+import org.connid.bundles.unix.schema.SchemaGroupAttribute;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * Compiles a filter into an awk program run on the host against the getent output, so that only the matching rows
+ * are sent back. The values are passed as awk variables, never as part of the program text.
+ */
+public class AwkFilter {
+
+    private static final Map<String, Integer> PASSWD_COLUMNS = new HashMap<String, Integer>();
+
+    private static final Map<String, Integer> GROUP_COLUMNS = new HashMap<String, Integer>();
+
+    static {
+        PASSWD_COLUMNS.put(SchemaAccountAttribute.NAME.getName(), column(PasswdRowElements.USERNAME.getCode()));
+        PASSWD_COLUMNS.put(Uid.NAME, column(PasswdRowElements.USERNAME.getCode()));
+        PASSWD_COLUMNS.put(SchemaAccountAttribute.UID.getName(),
+                column(PasswdRowElements.USER_IDENTIFIER.getCode()));
+        PASSWD_COLUMNS.put(SchemaAccountAttribute.COMMENT.getName(), column(PasswdRowElements.COMMENT.getCode()));
+        PASSWD_COLUMNS.put(SchemaAccountAttribute.HOME.getName(),
+                column(PasswdRowElements.HOME_DIRECTORY.getCode()));
+        PASSWD_COLUMNS.put(SchemaAccountAttribute.SHEL.getName(), column(PasswdRowElements.SHELL.getCode()));
+
+        GROUP_COLUMNS.put(SchemaGroupAttribute.NAME.getName(), column(GroupRowElements.GROUPNAME.getCode()));
+        GROUP_COLUMNS.put(Uid.NAME, column(GroupRowElements.GROUPNAME.getCode()));
+        GROUP_COLUMNS.put(SchemaGroupAttribute.GID.getName(), column(GroupRowElements.GROUP_IDENTIFIER.getCode()));
+    }
+
+    private final Map<String, Integer> columns;
+
+    private final List<String> values = new ArrayList<String>();
+
+    private String condition;
+
+    private AwkFilter(final Map<String, Integer> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @return the filter, null if some attribute of the filter is not a column of the getent output of the object
+     * class
+     */
+    public static AwkFilter compile(final ObjectClass objectClass, final Operand filter) {
+        if (filter == null) {
+            return null;
+        }
+        AwkFilter awkFilter;
+        if (ObjectClass.ACCOUNT.equals(objectClass)) {
+            awkFilter = new AwkFilter(PASSWD_COLUMNS);
+        } else if (ObjectClass.GROUP.equals(objectClass)) {
+            awkFilter = new AwkFilter(GROUP_COLUMNS);
+        } else {
+            return null;
+        }
+        awkFilter.condition = awkFilter.toCondition(filter);
+        return awkFilter.condition == null ? null : awkFilter;
+    }
+
+    private String toCondition(final Operand operand) {
+        if (operand.getOperator() == Operator.AND || operand.getOperator() == Operator.OR) {
+            String first = toCondition(operand.getFirstOperand());
+            String second = toCondition(operand.getSecondOperand());
+            if (first == null || second == null) {
+                return null;
+            }
+            return "(" + first + ") " + operand.getOperator() + " (" + second + ")";
+        }
+
+        Integer column = columns.get(operand.getAttributeName());
+        if (column == null) {
+            return null;
+        }
+        String field = "$" + column;
+        String value = addValue(operand.getAttributeValue());
+
+        String condition;
+        switch (operand.getOperator()) {
+            case EQ:
+                // same as equalsIgnoreCase on the client side
+                condition = "tolower(" + field + ") == tolower(" + value + ")";
+                break;
+            case SW:
+                condition = "index(" + field + ", " + value + ") == 1";
+                break;
+            case EW:
+                condition = "length(" + field + ") >= length(" + value + ") && substr(" + field + ", length("
+                        + field + ") - length(" + value + ") + 1) == " + value;
+                break;
+            case C:
+                condition = "index(" + field + ", " + value + ") > 0";
+                break;
+            default:
+                return null;
+        }
+        if (operand.getOperator() != Operator.EQ && operand.getAttributeValue().isEmpty()) {
+            // index() never finds the empty string, while every value starts with, ends with and contains it
+            condition = "1";
+        }
+        return operand.isNot() ? "!(" + condition + ")" : condition;
+    }
+
+    private String addValue(final String value) {
+        values.add(value);
+        return "v" + values.size();
+    }
+
+    /**
+     * @return the awk command line, to be piped after getent
+     */
+    public String toCommand() {
+        StringBuilder command = new StringBuilder("awk -F:");
+        for (int i = 0; i < values.size(); i++) {
+            // awk -v interprets escape sequences, so backslashes have to be doubled to be taken literally
+            command.append(" -v v").append(i + 1).append("=")
+                    .append(quote(values.get(i).replace("\\", "\\\\")));
+        }
+        command.append(" ").append(quote(condition));
+        return command.toString();
+    }
+
+    private static String quote(final String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    private static Integer column(final int code) {
+        return code + 1;
+    }
+}
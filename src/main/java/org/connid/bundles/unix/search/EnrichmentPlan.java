@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.search;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.connid.bundles.unix.schema.SchemaAccountAttribute;
+import org.connid.bundles.unix.schema.SchemaGroupAttribute;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.OperationalAttributes;
+
+/**
+ * The attributes of a search result that cost extra remote reads, and whether the caller asked for them. Without
+ * attributes to get all of them are returned except the members of groups, which are not returned by default.
+ */
+public class EnrichmentPlan {
+
+    private final boolean groups;
+
+    private final boolean shadow;
+
+    private final boolean permissions;
+
+    private final boolean members;
+
+    private final Set<String> requested;
+
+    public EnrichmentPlan(final OperationOptions options) {
+        String[] attributesToGet = options == null ? null : options.getAttributesToGet();
+        if (attributesToGet == null) {
+            groups = true;
+            shadow = true;
+            permissions = true;
+            members = false;
+            requested = null;
+            return;
+        }
+        requested = new HashSet<String>(Arrays.asList(attributesToGet));
+        groups = requested.contains(SchemaAccountAttribute.GROUPS.getName());
+        shadow = requested.contains(OperationalAttributes.LOCK_OUT_NAME)
+                || requested.contains(OperationalAttributes.ENABLE_NAME)
+                || requested.contains(OperationalAttributes.DISABLE_DATE_NAME);
+        permissions = requested.contains(SchemaAccountAttribute.PERMISIONS.getName())
+                || requested.contains(SchemaGroupAttribute.PERMISSIONS.getName());
+        members = requested.contains(SchemaGroupAttribute.MEMBERS.getName());
+    }
+
+    /**
+     * @return whether the groups of the users are needed, read with id or getent group
+     */
+    public boolean isGroups() {
+        return groups;
+    }
+
+    /**
+     * @return whether lock out, enable and disable date of the users are needed, read from the shadow entries
+     */
+    public boolean isShadow() {
+        return shadow;
+    }
+
+    /**
+     * @return whether the sudoers permissions of the users or groups are needed
+     */
+    public boolean isPermissions() {
+        return permissions;
+    }
+
+    /**
+     * @return whether the members of the groups are needed, the primary ones are read from passwd
+     */
+    public boolean isMembers() {
+        return members;
+    }
+
+    /**
+     * @return whether an attribute read from the passwd or group row itself is to be returned
+     */
+    public boolean isRequested(final String attributeName) {
+        return requested == null || requested.contains(attributeName);
+    }
+
+    public boolean isAnyAccountDetail() {
+        return groups || shadow || permissions;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.search;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.connid.bundles.unix.sshmanagement.ReadOutputExecutor;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Builds up to a number of objects at the same time and hands them to the results handler in the order they were
+ * added, always from the searching thread. Once the window is full adding waits for the oldest object, so a slow one
+ * holds back the others but never more than the window is built ahead.
+ */
+final class OrderedEnrichment {
+
+    private final ResultsHandler handler;
+
+    private final int parallelism;
+
+    private final Deque<Future<ConnectorObject>> building = new ArrayDeque<Future<ConnectorObject>>();
+
+    private boolean stopped = false;
+
+    OrderedEnrichment(final ResultsHandler handler, final int parallelism) {
+        this.handler = handler;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return false if the handler does not want any further objects
+     */
+    boolean add(final Callable<ConnectorObject> builder)
+            throws JSchException, IOException, InterruptedException {
+        if (stopped) {
+            return false;
+        }
+        building.addLast(ReadOutputExecutor.submit(builder));
+        while (building.size() >= parallelism || (!building.isEmpty() && building.peekFirst().isDone())) {
+            if (!handleOldest()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the objects still being built and hands them over.
+     *
+     * @return false if the handler does not want any further objects
+     */
+    boolean finish() throws JSchException, IOException, InterruptedException {
+        while (!building.isEmpty()) {
+            if (!handleOldest()) {
+                return false;
+            }
+        }
+        return !stopped;
+    }
+
+    private boolean handleOldest() throws JSchException, IOException, InterruptedException {
+        Future<ConnectorObject> oldest = building.pollFirst();
+        ConnectorObject object;
+        try {
+            object = oldest.get();
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof JSchException) {
+                throw (JSchException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw new ConnectionBrokenException(cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ConnectorException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+        if (!handler.handle(object)) {
+            cancel();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the objects not built yet, lookups already running are left to finish, an interrupted read would break
+     * a persistent shell shared with other commands.
+     */
+    private void cancel() {
+        stopped = true;
+        for (Future<ConnectorObject> future : building) {
+            future.cancel(false);
+        }
+        building.clear();
+    }
+}
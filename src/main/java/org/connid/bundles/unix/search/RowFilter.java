@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.connid.bundles.unix.files.GroupRow;
+import org.connid.bundles.unix.files.PasswdRow;
+import org.connid.bundles.unix.schema.SchemaAccountAttribute;
+import org.connid.bundles.unix.schema.SchemaGroupAttribute;
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * A filter compiled once into a tree of matchers and evaluated against the rows of one passwd or group snapshot in a
+ * single pass. Matches the same rows as {@link AwkFilter} does on the host, an attribute the rows do not have never
+ * matches.
+ */
+public final class RowFilter<R> {
+
+    private static final Map<String, Field<PasswdRow>> PASSWD_FIELDS = new HashMap<String, Field<PasswdRow>>();
+
+    private static final Map<String, Field<GroupRow>> GROUP_FIELDS = new HashMap<String, Field<GroupRow>>();
+
+    static {
+        Field<PasswdRow> username = new Field<PasswdRow>() {
+
+            @Override
+            public String get(final PasswdRow row) {
+                return row.getUsername();
+            }
+        };
+        PASSWD_FIELDS.put(SchemaAccountAttribute.NAME.getName(), username);
+        PASSWD_FIELDS.put(Uid.NAME, username);
+        PASSWD_FIELDS.put(SchemaAccountAttribute.UID.getName(), new Field<PasswdRow>() {
+
+            @Override
+            public String get(final PasswdRow row) {
+                return row.getUserIdentifier();
+            }
+        });
+        PASSWD_FIELDS.put(SchemaAccountAttribute.COMMENT.getName(), new Field<PasswdRow>() {
+
+            @Override
+            public String get(final PasswdRow row) {
+                return row.getComment();
+            }
+        });
+        PASSWD_FIELDS.put(SchemaAccountAttribute.HOME.getName(), new Field<PasswdRow>() {
+
+            @Override
+            public String get(final PasswdRow row) {
+                return row.getHomeDirectory();
+            }
+        });
+        PASSWD_FIELDS.put(SchemaAccountAttribute.SHEL.getName(), new Field<PasswdRow>() {
+
+            @Override
+            public String get(final PasswdRow row) {
+                return row.getShell();
+            }
+        });
+
+        Field<GroupRow> groupname = new Field<GroupRow>() {
+
+            @Override
+            public String get(final GroupRow row) {
+                return row.getGroupname();
+            }
+        };
+        GROUP_FIELDS.put(SchemaGroupAttribute.NAME.getName(), groupname);
+        GROUP_FIELDS.put(Uid.NAME, groupname);
+        GROUP_FIELDS.put(SchemaGroupAttribute.GID.getName(), new Field<GroupRow>() {
+
+            @Override
+            public String get(final GroupRow row) {
+                return row.getGroupIdentifier();
+            }
+        });
+    }
+
+    private final Matcher<R> matcher;
+
+    private RowFilter(final Matcher<R> matcher) {
+        this.matcher = matcher;
+    }
+
+    public static RowFilter<PasswdRow> forAccounts(final Operand filter) {
+        return new RowFilter<PasswdRow>(compile(filter, PASSWD_FIELDS));
+    }
+
+    public static RowFilter<GroupRow> forGroups(final Operand filter) {
+        return new RowFilter<GroupRow>(compile(filter, GROUP_FIELDS));
+    }
+
+    public boolean matches(final R row) {
+        return matcher.matches(row);
+    }
+
+    public List<R> filter(final List<R> rows) {
+        List<R> matching = new ArrayList<R>();
+        for (R row : rows) {
+            if (matcher.matches(row)) {
+                matching.add(row);
+            }
+        }
+        return matching;
+    }
+
+    private static <R> Matcher<R> compile(final Operand operand, final Map<String, Field<R>> fields) {
+        switch (operand.getOperator()) {
+            case AND:
+                return new AndMatcher<R>(compile(operand.getFirstOperand(), fields),
+                        compile(operand.getSecondOperand(), fields));
+            case OR:
+                return new OrMatcher<R>(compile(operand.getFirstOperand(), fields),
+                        compile(operand.getSecondOperand(), fields));
+            default:
+                return new ValueMatcher<R>(fields.get(operand.getAttributeName()), operand);
+        }
+    }
+
+    private interface Field<R> {
+
+        String get(R row);
+    }
+
+    private interface Matcher<R> {
+
+        boolean matches(R row);
+    }
+
+    private static class AndMatcher<R> implements Matcher<R> {
+
+        private final Matcher<R> first;
+
+        private final Matcher<R> second;
+
+        AndMatcher(final Matcher<R> first, final Matcher<R> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean matches(final R row) {
+            return first.matches(row) && second.matches(row);
+        }
+    }
+
+    private static class OrMatcher<R> implements Matcher<R> {
+
+        private final Matcher<R> first;
+
+        private final Matcher<R> second;
+
+        OrMatcher(final Matcher<R> first, final Matcher<R> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean matches(final R row) {
+            return first.matches(row) || second.matches(row);
+        }
+    }
+
+    private static class ValueMatcher<R> implements Matcher<R> {
+
+        private final Field<R> field;
+
+        private final Operator operator;
+
+        private final String value;
+
+        private final boolean not;
+
+        ValueMatcher(final Field<R> field, final Operand operand) {
+            this.field = field;
+            this.operator = operand.getOperator();
+            this.value = operand.getAttributeValue();
+            this.not = operand.isNot();
+        }
+
+        @Override
+        public boolean matches(final R row) {
+            if (field == null) {
+                return false;
+            }
+            return matchesValue(field.get(row)) != not;
+        }
+
+        private boolean matchesValue(final String rowValue) {
+            switch (operator) {
+                case EQ:
+                    return value.equalsIgnoreCase(rowValue);
+                case SW:
+                    return rowValue.startsWith(value);
+                case EW:
+                    return rowValue.endsWith(value);
+                case C:
+                    return rowValue.contains(value);
+                default:
+                    return false;
+            }
+        }
+    }
+}
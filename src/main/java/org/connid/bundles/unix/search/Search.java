@@ -17,9 +17,12 @@ package org.connid.bundles.unix.search;
 
 import java.io.IOException;
 import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.naming.CommunicationException;
 
@@ -28,16 +31,26 @@ import org.connid.bundles.unix.UnixConnector;
 import org.connid.bundles.unix.UnixResult;
 import org.connid.bundles.unix.UnixResult.Operation;
 import org.connid.bundles.unix.files.GroupFile;
+import org.connid.bundles.unix.files.GroupMembership;
 import org.connid.bundles.unix.files.GroupRow;
 import org.connid.bundles.unix.files.PasswdFile;
 import org.connid.bundles.unix.files.PasswdRow;
+import org.connid.bundles.unix.files.ShadowFile;
+import org.connid.bundles.unix.files.ShadowStatus;
+import org.connid.bundles.unix.files.SnapshotCache;
+import org.connid.bundles.unix.files.SudoersFile;
+import org.connid.bundles.unix.files.UserDetailsFile;
 import org.connid.bundles.unix.schema.SchemaAccountAttribute;
 import org.connid.bundles.unix.schema.SchemaGroupAttribute;
+import org.connid.bundles.unix.sshmanagement.LineHandler;
+import org.connid.bundles.unix.utilities.Constants;
 import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
+import org.connid.bundles.unix.utilities.ValuePool;
 import org.identityconnectors.common.CollectionUtil;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.exceptions.UnknownUidException;
 import org.identityconnectors.framework.common.objects.AttributeBuilder;
 import org.identityconnectors.framework.common.objects.ConnectorObject;
@@ -54,6 +67,11 @@ public class Search {
 
 	private static final Log LOG = Log.getLog(Search.class);
 
+	/**
+	 * Exit status of getent for a database that cannot be listed.
+	 */
+	private static final int GETENT_ENUMERATION_NOT_SUPPORTED = 3;
+
 	private UnixConnection unixConnection = null;
 
 	private Operand filter = null;
@@ -64,6 +82,32 @@ public class Search {
 
 	private OperationOptions options;
 
+	private UserDetailsFile userDetails = null;
+
+	private EnrichmentPlan enrichment;
+
+	/**
+	 * The groups of all users when a search returns several users and their groups are not read in bulk.
+	 */
+	private GroupMembership membership = null;
+
+	private ShadowFile shadowFile = null;
+
+	/**
+	 * The users joined to the groups by their gid when the members of groups are returned.
+	 */
+	private PasswdFile primaryMembers = null;
+
+	/**
+	 * The permission files of all users and groups, read on first use.
+	 */
+	private SudoersFile sudoersFile = null;
+
+	/**
+	 * Set when the rows come from the snapshot cache, which holds all of them, paging is left to the handlers then.
+	 */
+	private boolean unpaged = false;
+
 	public Search(final UnixConnection unixConnection, final ResultsHandler handler, final ObjectClass oc,
 			final Operand filter, final OperationOptions options) {
 		this.unixConnection = unixConnection;
@@ -71,16 +115,40 @@ public class Search {
 		this.objectClass = oc;
 		this.filter = filter;
 		this.options = options;
+		this.enrichment = new EnrichmentPlan(options);
+
+	}
 
+	/**
+	 * Builds the objects from details that were already read from the host, no further command is run.
+	 */
+	public Search(final UnixConnection unixConnection, final ResultsHandler handler, final ObjectClass oc,
+			final UserDetailsFile userDetails) {
+		this(unixConnection, handler, oc, null, null);
+		this.userDetails = userDetails;
+	}
+
+	public void searchDetails() throws IOException, InterruptedException, JSchException {
+		if (objectClass.equals(ObjectClass.ACCOUNT)) {
+			fillUserHandler(userDetails.getPasswdFile().getPasswdRows(), false);
+		} else if (objectClass.equals(ObjectClass.GROUP) && !userDetails.getGroupFile().getGroupRows().isEmpty()) {
+			fillGroupHandler(userDetails.getGroupFile().getGroupRows());
+		}
 	}
 
 	public void searchAll() throws JSchException, IOException, InterruptedException {
 		if (objectClass.equals(ObjectClass.ACCOUNT)) {
-			PasswdFile passwdFile = searchAllUsers();
+			if (streamUsers(null)) {
+				return;
+			}
+			PasswdFile passwdFile = searchAllUsers(null);
 			fillUserHandler(passwdFile.getPasswdRows(), false);
 
 		} else if (objectClass.equals(ObjectClass.GROUP)) {
-			GroupFile groupFile = searchAllGroups();
+			if (streamGroups(null)) {
+				return;
+			}
+			GroupFile groupFile = searchAllGroups(null);
 			fillGroupHandler(groupFile.getGroupRows());
 
 		}
@@ -88,14 +156,18 @@ public class Search {
 	}
 
 	public void equalSearch() throws IOException, InterruptedException, JSchException {
+		// a single user or group is read directly, getent can not negate the match though
+		if ((!filter.isUid() || filter.isNot()) && filteredSearch(true)) {
+			return;
+		}
 		if (objectClass.equals(ObjectClass.ACCOUNT)) {
 
-			PasswdFile passwdFile = (filter.isUid() ? searchUserByUid() : searchAllUsers());
+			PasswdFile passwdFile = (filter.isUid() ? searchUserByUid() : searchAllUsers(null));
 			fillUserHandler(passwdFile.searchRowByAttribute(filter.getAttributeName(), filter.getAttributeValue(),
 					filter.isNot()), true);
 
 		} else if (objectClass.equals(ObjectClass.GROUP)) {
-			GroupFile groupFile = (filter.isUid() ? searchGroupByUid() : searchAllGroups());
+			GroupFile groupFile = (filter.isUid() ? searchGroupByUid() : searchAllGroups(null));
 			fillGroupHandler(groupFile.searchRowByAttribute(filter.getAttributeName(), filter.getAttributeValue(),
 					filter.isNot()));
 
@@ -103,6 +175,12 @@ public class Search {
 	}
 
 	private PasswdFile searchUserByUid() throws JSchException, IOException {
+		PasswdFile cached = cachedUsers();
+		if (cached != null) {
+			// the row is picked by the caller, a single user is never paged
+			unpaged = false;
+			return cached;
+		}
 		UnixResult result = unixConnection
 				.executeRead(UnixConnector.getCommandGenerator().userExists(filter.getAttributeValue()));
 		result.checkResult(Operation.GETENET, "Search failed", LOG);
@@ -111,18 +189,298 @@ public class Search {
 
 	}
 
-	private PasswdFile searchAllUsers() throws JSchException, IOException {
+	/**
+	 * Lets awk on the host drop the rows not matching the filter, so that only the matching ones are transferred.
+	 *
+	 * @return false if the filter can not be run on the host and the rows have to be filtered here
+	 */
+	private boolean filteredSearch(final boolean isEqual)
+			throws IOException, InterruptedException, JSchException {
+		AwkFilter awkFilter = AwkFilter.compile(objectClass, filter);
+		if (awkFilter == null) {
+			return false;
+		}
+		if (objectClass.equals(ObjectClass.ACCOUNT)) {
+			PasswdFile cached = cachedUsers();
+			if (cached != null) {
+				fillUserHandler(searchCachedUsers(cached), isEqual);
+			} else if (!streamUsers(awkFilter.toCommand())) {
+				fillUserHandler(searchAllUsers(awkFilter.toCommand()).getPasswdRows(), isEqual);
+			}
+		} else {
+			GroupFile cached = cachedGroups();
+			if (cached != null) {
+				fillGroupHandler(searchCachedGroups(cached));
+			} else if (!streamGroups(awkFilter.toCommand())) {
+				fillGroupHandler(searchAllGroups(awkFilter.toCommand()).getGroupRows());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hands every user to the handler as soon as its row arrives, neither the output nor the passwd file is held in
+	 * memory. With bulk enrichment the details come first and are read completely, the passwd rows follow them.
+	 *
+	 * @return false if the users have to be read completely instead, because the snapshot cache keeps them or every
+	 *         user needs further commands for its details
+	 */
+	private boolean streamUsers(final String awkFilter) throws JSchException, IOException {
+		final boolean bulk = unixConnection.getUnixConfiguration().isBulkEnrichment()
+				&& enrichment.isAnyAccountDetail();
+		if (!bulk && (enrichment.isAnyAccountDetail()
+				|| unixConnection.getUnixConfiguration().getSnapshotCacheTtl() > 0)) {
+			return false;
+		}
+		final String passwdMarker = Constants.SECTION_MARKER + " " + Constants.PASSWD_SECTION;
+		final List<String> detailLines = new ArrayList<String>();
+		UnixResult result = unixConnection.executeRead(bulk
+				? UnixConnector.getCommandGenerator().searchAllUsersWithDetails(options, awkFilter,
+						enrichment.isShadow(), enrichment.isGroups(), enrichment.isPermissions())
+				: UnixConnector.getCommandGenerator().searchAllUser(options, awkFilter), new LineHandler() {
+
+					private boolean passwd = !bulk;
+
+					@Override
+					public boolean handle(final String line) throws IOException {
+						if (!passwd) {
+							int marker = line.indexOf(passwdMarker);
+							if (marker < 0) {
+								detailLines.add(line);
+								return true;
+							}
+							detailLines.add(line.substring(0, marker));
+							userDetails = new UserDetailsFile(detailLines);
+							detailLines.clear();
+							passwd = true;
+							return true;
+						}
+						if (StringUtil.isBlank(line)) {
+							return true;
+						}
+						try {
+							return handleUser(EvaluateCommandsResultOutput.toPasswdRow(line));
+						} catch (JSchException e) {
+							throw new ConnectorException(e.getMessage(), e);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new ConnectionBrokenException(e);
+						}
+					}
+				});
+		result.checkResult(Operation.GETENET, "Search failed", LOG);
+		return true;
+	}
+
+	/**
+	 * Hands every group to the handler as soon as its row arrives, the users and permissions needed are read before.
+	 *
+	 * @return false if the groups have to be read completely instead, because the snapshot cache keeps them
+	 */
+	private boolean streamGroups(final String awkFilter) throws JSchException, IOException {
+		if (unixConnection.getUnixConfiguration().getSnapshotCacheTtl() > 0) {
+			return false;
+		}
+		readPrimaryMembers();
+		if (enrichment.isPermissions()) {
+			getSudoersFile();
+		}
+		final int[] handled = new int[1];
+		UnixResult result = unixConnection.executeRead(
+				UnixConnector.getCommandGenerator().searchAllGroups(options, awkFilter), new LineHandler() {
+
+					@Override
+					public boolean handle(final String line) throws IOException {
+						if (StringUtil.isBlank(line)) {
+							return true;
+						}
+						handled[0]++;
+						try {
+							return handleGroup(EvaluateCommandsResultOutput.toGroupRow(line));
+						} catch (JSchException e) {
+							throw new ConnectorException(e.getMessage(), e);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new ConnectionBrokenException(e);
+						}
+					}
+				});
+		result.checkResult(Operation.GETENET, "Search failed", LOG);
+		if (handled[0] == 0) {
+			throw new ConnectException("No results found");
+		}
+		return true;
+	}
+
+	/**
+	 * Single operands are looked up in the indexes of the snapshot, anything else is evaluated row by row.
+	 */
+	private List<PasswdRow> searchCachedUsers(final PasswdFile cached) {
+		String name = filter.getAttributeName();
+		String value = filter.getAttributeValue();
+		switch (filter.getOperator()) {
+			case EQ:
+				return cached.searchRowByAttribute(name, value, filter.isNot());
+			case SW:
+				return filter.isNot() ? RowFilter.forAccounts(filter).filter(cached.getPasswdRows())
+						: cached.searchRowByStartsWithValue(name, value);
+			case EW:
+				return filter.isNot() ? RowFilter.forAccounts(filter).filter(cached.getPasswdRows())
+						: cached.searchRowByEndsWithValue(name, value);
+			case C:
+				return filter.isNot() ? RowFilter.forAccounts(filter).filter(cached.getPasswdRows())
+						: cached.searchRowByContainsValue(name, value);
+			default:
+				return RowFilter.forAccounts(filter).filter(cached.getPasswdRows());
+		}
+	}
+
+	private List<GroupRow> searchCachedGroups(final GroupFile cached) {
+		String name = filter.getAttributeName();
+		String value = filter.getAttributeValue();
+		switch (filter.getOperator()) {
+			case EQ:
+				return cached.searchRowByAttribute(name, value, filter.isNot());
+			case SW:
+				return filter.isNot() ? RowFilter.forGroups(filter).filter(cached.getGroupRows())
+						: cached.searchRowByStartsWithValue(name, value);
+			case EW:
+				return filter.isNot() ? RowFilter.forGroups(filter).filter(cached.getGroupRows())
+						: cached.searchRowByEndsWithValue(name, value);
+			case C:
+				return filter.isNot() ? RowFilter.forGroups(filter).filter(cached.getGroupRows())
+						: cached.searchRowByContainsValue(name, value);
+			default:
+				return RowFilter.forGroups(filter).filter(cached.getGroupRows());
+		}
+	}
+
+	/**
+	 * @return all users from the snapshot cache, read into it if missing, null if the cache is disabled or the users
+	 *         are read together with their details
+	 */
+	private PasswdFile cachedUsers() throws JSchException, IOException {
+		long ttl = unixConnection.getUnixConfiguration().getSnapshotCacheTtl();
+		if (ttl <= 0 || (unixConnection.getUnixConfiguration().isBulkEnrichment() && enrichment.isAnyAccountDetail())) {
+			return null;
+		}
+		unpaged = true;
+		return snapshotUsers();
+	}
+
+	/**
+	 * @return all users, from the snapshot cache if it is enabled
+	 */
+	private PasswdFile snapshotUsers() throws JSchException, IOException {
+		long ttl = unixConnection.getUnixConfiguration().getSnapshotCacheTtl();
+		SnapshotCache cache = ttl > 0 ? SnapshotCache.forHost(unixConnection.getUnixConfiguration()) : null;
+		PasswdFile passwdFile = cache == null ? null : cache.getPasswdFile(ttl);
+		if (passwdFile != null) {
+			LOG.ok("Users served from the snapshot cache");
+			return passwdFile;
+		}
+		long generation = cache == null ? 0 : cache.getGeneration();
+		UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().searchAllUser(null, null));
+		result.checkResult(Operation.GETENET, "Search failed", LOG);
+		passwdFile = new PasswdFile(getFileOutput(result.getOutput()));
+		if (cache != null) {
+			cache.putPasswdFile(passwdFile, generation);
+		}
+		return passwdFile;
+	}
+
+	/**
+	 * Reads the users once per search if the members of the groups are returned, the members whose primary group it
+	 * is are not listed by the group itself.
+	 */
+	private void readPrimaryMembers() throws JSchException, IOException {
+		if (enrichment.isMembers() && primaryMembers == null) {
+			primaryMembers = userDetails != null ? userDetails.getPasswdFile() : snapshotUsers();
+		}
+	}
+
+	/**
+	 * @return all groups from the snapshot cache, read into it if missing, null if the cache is disabled
+	 */
+	private GroupFile cachedGroups() throws JSchException, IOException {
+		if (unixConnection.getUnixConfiguration().getSnapshotCacheTtl() <= 0) {
+			return null;
+		}
+		unpaged = true;
+		return snapshotGroups();
+	}
 
-		UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().searchAllUser(options));
+	/**
+	 * @return all groups, from the snapshot cache if it is enabled
+	 */
+	private GroupFile snapshotGroups() throws JSchException, IOException {
+		long ttl = unixConnection.getUnixConfiguration().getSnapshotCacheTtl();
+		SnapshotCache cache = ttl > 0 ? SnapshotCache.forHost(unixConnection.getUnixConfiguration()) : null;
+		GroupFile groupFile = cache == null ? null : cache.getGroupFile(ttl);
+		if (groupFile != null) {
+			LOG.ok("Groups served from the snapshot cache");
+			return groupFile;
+		}
+		long generation = cache == null ? 0 : cache.getGeneration();
+		UnixResult result = unixConnection
+				.executeRead(UnixConnector.getCommandGenerator().searchAllGroups(null, null));
+		result.checkResult(Operation.GETENET, "Search failed", LOG);
+		groupFile = new GroupFile(getFileOutput(result.getOutput()));
+		if (cache != null) {
+			cache.putGroupFile(groupFile, generation);
+		}
+		return groupFile;
+	}
+
+	/**
+	 * Applies the paging of the options to rows that were not paged on the host, like sed does there.
+	 */
+	private <R> List<R> page(final List<R> rows) {
+		if (!unpaged || rows == null || options == null || options.getPageSize() == null) {
+			return rows;
+		}
+		int offset = options.getPagedResultsOffset() == null ? 0 : options.getPagedResultsOffset().intValue();
+		int from = Math.max(offset, 1) - 1;
+		int to = from + Math.max(options.getPageSize().intValue(), 1);
+		if (from >= rows.size()) {
+			return Collections.emptyList();
+		}
+		return rows.subList(from, Math.min(to, rows.size()));
+	}
+
+	private PasswdFile searchAllUsers(final String awkFilter) throws JSchException, IOException {
+		if (awkFilter == null) {
+			PasswdFile cached = cachedUsers();
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		if (unixConnection.getUnixConfiguration().isBulkEnrichment() && enrichment.isAnyAccountDetail()) {
+			UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator()
+					.searchAllUsersWithDetails(options, awkFilter, enrichment.isShadow(), enrichment.isGroups(),
+							enrichment.isPermissions()));
+			result.checkResult(Operation.GETENET, "Search failed", LOG);
+			userDetails = new UserDetailsFile(getFileOutput(result.getOutput()));
+			return userDetails.getPasswdFile();
+		}
+
+		UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().searchAllUser(options, awkFilter));
 		result.checkResult(Operation.GETENET, "Search failed", LOG);
 		PasswdFile passwdFile = new PasswdFile(getFileOutput(result.getOutput()));
 		return passwdFile;
 
 	}
 
-	private GroupFile searchAllGroups() throws JSchException, IOException {
+	private GroupFile searchAllGroups(final String awkFilter) throws JSchException, IOException {
+		if (awkFilter == null) {
+			GroupFile cached = cachedGroups();
+			if (cached != null) {
+				return cached;
+			}
+		}
 
-		UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().searchAllGroups(options));
+		UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().searchAllGroups(options, awkFilter));
 		result.checkResult(Operation.GETENET, "Search failed", LOG);
 		GroupFile passwdFile = new GroupFile(getFileOutput(result.getOutput()));
 		return passwdFile;
@@ -130,6 +488,12 @@ public class Search {
 	}
 
 	private GroupFile searchGroupByUid() throws JSchException, IOException {
+		GroupFile cached = cachedGroups();
+		if (cached != null) {
+			// the row is picked by the caller, a single group is never paged
+			unpaged = false;
+			return cached;
+		}
 
 		UnixResult result = unixConnection
 				.executeRead(UnixConnector.getCommandGenerator().groupExists(filter.getAttributeValue()));
@@ -146,50 +510,76 @@ public class Search {
 	}
 
 	public void startsWithSearch() throws IOException, InterruptedException, JSchException {
+		if (filteredSearch(false)) {
+			return;
+		}
 		if (objectClass.equals(ObjectClass.ACCOUNT)) {
-			PasswdFile passwdFile = searchAllUsers();
+			PasswdFile passwdFile = searchAllUsers(null);
 			fillUserHandler(
 					passwdFile.searchRowByStartsWithValue(filter.getAttributeName(), filter.getAttributeValue()),
 					false);
 		} else if (objectClass.equals(ObjectClass.GROUP)) {
-			GroupFile groupFile = searchAllGroups();
+			GroupFile groupFile = searchAllGroups(null);
 			fillGroupHandler(
 					groupFile.searchRowByStartsWithValue(filter.getAttributeName(), filter.getAttributeValue()));
 		}
 	}
 
 	public void endsWithSearch() throws IOException, InterruptedException, JSchException {
+		if (filteredSearch(false)) {
+			return;
+		}
 		if (objectClass.equals(ObjectClass.ACCOUNT)) {
-			PasswdFile passwdFile = searchAllUsers();
+			PasswdFile passwdFile = searchAllUsers(null);
 			fillUserHandler(passwdFile.searchRowByEndsWithValue(filter.getAttributeName(), filter.getAttributeValue()),
 					false);
 		} else if (objectClass.equals(ObjectClass.GROUP)) {
-			GroupFile groupFile = searchAllGroups();
+			GroupFile groupFile = searchAllGroups(null);
 			fillGroupHandler(groupFile.searchRowByEndsWithValue(filter.getAttributeName(), filter.getAttributeValue()));
 		}
 	}
 
 	public void containsSearch() throws IOException, InterruptedException, JSchException {
+		if (filteredSearch(false)) {
+			return;
+		}
 		if (objectClass.equals(ObjectClass.ACCOUNT)) {
-			PasswdFile passwdFile = searchAllUsers();
+			PasswdFile passwdFile = searchAllUsers(null);
 			fillUserHandler(passwdFile.searchRowByContainsValue(filter.getAttributeName(), filter.getAttributeValue()),
 					false);
 		} else if (objectClass.equals(ObjectClass.GROUP)) {
-			GroupFile groupFile = searchAllGroups();
+			GroupFile groupFile = searchAllGroups(null);
 			fillGroupHandler(groupFile.searchRowByContainsValue(filter.getAttributeName(), filter.getAttributeValue()));
 		}
 	}
 
-	public void orSearch() throws IOException, InterruptedException {
-		throw new UnsupportedOperationException("Not yet implemented");
+	public void orSearch() throws IOException, InterruptedException, JSchException {
+		compositeSearch();
 	}
 
-	public void andSearch() {
-		throw new UnsupportedOperationException("Not yet implemented");
+	public void andSearch() throws IOException, InterruptedException, JSchException {
+		compositeSearch();
+	}
+
+	/**
+	 * Runs the whole filter tree on the host if possible, otherwise evaluates it against one read of all rows.
+	 */
+	private void compositeSearch() throws IOException, InterruptedException, JSchException {
+		if (filteredSearch(false)) {
+			return;
+		}
+		if (objectClass.equals(ObjectClass.ACCOUNT)) {
+			PasswdFile passwdFile = searchAllUsers(null);
+			fillUserHandler(RowFilter.forAccounts(filter).filter(passwdFile.getPasswdRows()), false);
+		} else if (objectClass.equals(ObjectClass.GROUP)) {
+			GroupFile groupFile = searchAllGroups(null);
+			fillGroupHandler(RowFilter.forGroups(filter).filter(groupFile.getGroupRows()));
+		}
 	}
 
-	private void fillUserHandler(final List<PasswdRow> passwdRows, boolean isEqual)
+	private void fillUserHandler(final List<PasswdRow> allRows, boolean isEqual)
 			throws ConnectException, IOException, InterruptedException, JSchException {
+		List<PasswdRow> passwdRows = page(allRows);
 		if (passwdRows == null) {
 			if (isEqual && filter != null && filter.isUid()) {
 				throw new UnknownUidException("Could not find user with uid " + filter.getAttributeValue());
@@ -199,110 +589,262 @@ public class Search {
 			// handler.handle(bld.build());
 		}
 
+		if (enrichment.isGroups() && userDetails == null && passwdRows.size() > 1) {
+			// one read of the group database instead of one id per user
+			membership = snapshotGroups().getMembership();
+		}
+		if (enrichment.isShadow() && userDetails == null && passwdRows.size() > 1) {
+			// one read of the shadow database instead of one getent per user
+			shadowFile = readShadowFile();
+		}
+		// permissions are read once for all users, shadow and groups too unless there is a single user
+		OrderedEnrichment parallel = parallelEnrichment(severalLookups(passwdRows));
 		for (Iterator<PasswdRow> it = passwdRows.iterator(); it.hasNext();) {
-			ConnectorObjectBuilder bld = new ConnectorObjectBuilder();
-			PasswdRow passwdRow = it.next();
-			if (StringUtil.isNotEmpty(passwdRow.getUsername()) && StringUtil.isNotBlank(passwdRow.getUsername())) {
-				bld.setName(passwdRow.getUsername());
-				bld.setUid(passwdRow.getUsername());
-			} else {
-				bld.setUid("_W_R_O_N_G_");
-				bld.setName("_W_R_O_N_G_");
+			final PasswdRow passwdRow = it.next();
+			if (parallel == null) {
+				if (!handleUser(passwdRow)) {
+					return;
+				}
+			} else if (!parallel.add(new Callable<ConnectorObject>() {
+
+				@Override
+				public ConnectorObject call() throws Exception {
+					return buildUser(passwdRow);
+				}
+			})) {
+				return;
 			}
+		}
+		if (parallel != null) {
+			parallel.finish();
+		}
+	}
+
+	/**
+	 * @return the objects are built by several threads if more than one of them needs further commands, null for
+	 *         one by one
+	 */
+	private OrderedEnrichment parallelEnrichment(final boolean lookups) {
+		int parallelism = unixConnection.getUnixConfiguration().getEnrichmentParallelism();
+		if (!lookups || userDetails != null || parallelism <= 1) {
+			return null;
+		}
+		return new OrderedEnrichment(handler, parallelism);
+	}
+
+	/**
+	 * @return whether more than one of the users needs further commands
+	 */
+	private boolean severalLookups(final List<PasswdRow> passwdRows) {
+		int lookups = 0;
+		for (PasswdRow passwdRow : passwdRows) {
+			if (needsLookup(passwdRow) && ++lookups > 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether the groups or the status of the user are missing from what was read for all users
+	 */
+	private boolean needsLookup(final PasswdRow passwdRow) {
+		if (enrichment.isShadow()
+				&& (shadowFile == null || shadowFile.getStatus(passwdRow.getUsername()) == null)) {
+			return true;
+		}
+		return enrichment.isGroups()
+				&& (membership == null || !membership.hasGroup(passwdRow.getGroupIdentifier()));
+	}
+
+	/**
+	 * @return false if the handler does not want any further objects
+	 */
+	private boolean handleUser(final PasswdRow passwdRow)
+			throws ConnectException, IOException, InterruptedException, JSchException {
+		return handler.handle(buildUser(passwdRow));
+	}
+
+	private ConnectorObject buildUser(final PasswdRow passwdRow)
+			throws ConnectException, IOException, InterruptedException, JSchException {
+		ConnectorObjectBuilder bld = new ConnectorObjectBuilder();
+		if (StringUtil.isNotEmpty(passwdRow.getUsername()) && StringUtil.isNotBlank(passwdRow.getUsername())) {
+			bld.setName(passwdRow.getUsername());
+			bld.setUid(passwdRow.getUsername());
+		} else {
+			bld.setUid("_W_R_O_N_G_");
+			bld.setName("_W_R_O_N_G_");
+		}
+		// fields nobody asked for are not even cut out of the row
+		if (enrichment.isRequested(SchemaAccountAttribute.COMMENT.getName())) {
 			bld.addAttribute(AttributeBuilder.build(SchemaAccountAttribute.COMMENT.getName(),
 					CollectionUtil.newSet(passwdRow.getComment())));
-			bld.addAttribute(AttributeBuilder.build(SchemaAccountAttribute.SHEL.getName(),
-					CollectionUtil.newSet(passwdRow.getShell())));
+		}
+		if (enrichment.isRequested(SchemaAccountAttribute.SHEL.getName())) {
+			bld.addAttribute(ValuePool.attribute(SchemaAccountAttribute.SHEL.getName(), passwdRow.getShell()));
+		}
+		if (enrichment.isRequested(SchemaAccountAttribute.HOME.getName())) {
 			bld.addAttribute(AttributeBuilder.build(SchemaAccountAttribute.HOME.getName(),
 					CollectionUtil.newSet(passwdRow.getHomeDirectory())));
+		}
+		if (enrichment.isRequested(SchemaAccountAttribute.UID.getName())) {
 			bld.addAttribute(AttributeBuilder.build(SchemaAccountAttribute.UID.getName(),
 					CollectionUtil.newSet(passwdRow.getUserIdentifier())));
+		}
 
-			bld.addAttribute(
-					AttributeBuilder.build(SchemaAccountAttribute.GROUPS.getName(),
-							EvaluateCommandsResultOutput.evaluateUserGroups(unixConnection
-									.executeRead(
-											UnixConnector.getCommandGenerator().userGroups(passwdRow.getUsername()))
-									.getOutput())));
-
-			String shadowInfo = unixConnection
-					.executeRead(UnixConnector.getCommandGenerator().userStatus(passwdRow.getUsername())).getOutput();
-			if (StringUtil.isNotBlank(shadowInfo)) {
-				String[] shadowAttrs = shadowInfo.split(":", 9);
-				bld.addAttribute(OperationalAttributes.LOCK_OUT_NAME,
-						EvaluateCommandsResultOutput.evaluateUserLockoutStatus(shadowAttrs[1]));
-				Long timeInMilis = EvaluateCommandsResultOutput.evaluateDisableDate(shadowAttrs[7]);
+		if (enrichment.isGroups()) {
+			bld.addAttribute(AttributeBuilder.build(SchemaAccountAttribute.GROUPS.getName(),
+					getUserGroups(passwdRow)));
+		}
+
+		if (enrichment.isShadow()) {
+			ShadowStatus status = getShadowStatus(passwdRow.getUsername());
+			if (status != null) {
+				bld.addAttribute(ValuePool.attribute(OperationalAttributes.LOCK_OUT_NAME, status.isLocked()));
+				long timeInMilis = status.getDisableDate();
 
 				Date currentTime = new Date();
 				if (timeInMilis != 0) {
 					bld.addAttribute(OperationalAttributes.DISABLE_DATE_NAME, timeInMilis);
 					boolean enabled = currentTime.before(new Date(timeInMilis));
-					bld.addAttribute(OperationalAttributes.ENABLE_NAME, enabled);
+					bld.addAttribute(ValuePool.attribute(OperationalAttributes.ENABLE_NAME, enabled));
 				} else {
-					bld.addAttribute(OperationalAttributes.ENABLE_NAME,
-							EvaluateCommandsResultOutput.evaluateUserActivationStatus(shadowAttrs[7]));
+					bld.addAttribute(ValuePool.attribute(OperationalAttributes.ENABLE_NAME,
+							status.getExpireDay() == ShadowStatus.NO_DAY));
 				}
 			}
+		}
 
-			String userPermissions = unixConnection
-					.executeRead(UnixConnector.getCommandGenerator().userPermissions(passwdRow.getUsername()))
-					.getOutput();
+		if (enrichment.isPermissions()) {
+			String userPermissions = getUserPermissions(passwdRow.getUsername());
 			if (StringUtil.isNotBlank(userPermissions)) {
 				String evaluated = EvaluateCommandsResultOutput.evaluatePermissions(passwdRow.getUsername(),
 						userPermissions);
 				LOG.ok("Evaluated permissions: {0}", evaluated);
-				if (!evaluated.contains("No such file or directory")) {
-					bld.addAttribute(SchemaAccountAttribute.PERMISIONS.getName(), evaluated);
-				} else {
-					LOG.ok("No permissions for user {0}", passwdRow.getUsername());
-				}
+				bld.addAttribute(SchemaAccountAttribute.PERMISIONS.getName(), evaluated);
+			}
+		}
+
+		ConnectorObject object = bld.build();
+		LOG.ok("Returning object: {0}", object);
+		return object;
+	}
+
+	private List<String> getUserGroups(final PasswdRow passwdRow) throws JSchException, IOException {
+		if (userDetails != null) {
+			return userDetails.getUserGroups(passwdRow);
+		}
+		// a primary group unknown to getent group belongs to a name service only id asks
+		if (membership != null && membership.hasGroup(passwdRow.getGroupIdentifier())) {
+			return membership.getUserGroups(passwdRow);
+		}
+		return EvaluateCommandsResultOutput.evaluateUserGroups(unixConnection
+				.executeRead(UnixConnector.getCommandGenerator().userGroups(passwdRow.getUsername())).getOutput());
+	}
+
+	private ShadowStatus getShadowStatus(final String username) throws JSchException, IOException {
+		if (userDetails != null) {
+			return userDetails.getShadowStatus(username);
+		}
+		if (shadowFile != null) {
+			ShadowStatus status = shadowFile.getStatus(username);
+			if (status != null) {
+				return status;
 			}
+			// not every name service lists all of its users, ask for the missing ones
+		}
+		return ShadowStatus.parse(
+				unixConnection.executeRead(UnixConnector.getCommandGenerator().userStatus(username)).getOutput());
+	}
 
-			ConnectorObject object = bld.build();
-			LOG.ok("Returning object: {0}", object);
-			handler.handle(object);
+	/**
+	 * @return the status of all users the shadow database lists, the others are looked up one by one, null if the
+	 *         database cannot be listed at all
+	 */
+	private ShadowFile readShadowFile() throws JSchException, IOException {
+		UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().allUsersStatus());
+		if (result.getExitStatus() == GETENT_ENUMERATION_NOT_SUPPORTED) {
+			LOG.ok("The shadow database cannot be listed, looking up every user");
+			return null;
 		}
+		result.checkResult(Operation.GETENET, "Reading shadow entries failed", LOG);
+		return new ShadowFile(getFileOutput(result.getOutput()));
+	}
 
+	private String getUserPermissions(final String username) throws JSchException, IOException {
+		return getSudoersFile().getUserPermissions(username);
 	}
 
-	private void fillGroupHandler(final List<GroupRow> groupRows)
+	private String getGroupPermissions(final String groupname) throws JSchException, IOException {
+		return getSudoersFile().getGroupPermissions(groupname);
+	}
+
+	/**
+	 * @return the permission files of all users and groups, read once per search unless the details have them
+	 */
+	private synchronized SudoersFile getSudoersFile() throws JSchException, IOException {
+		if (sudoersFile == null) {
+			if (userDetails != null) {
+				sudoersFile = userDetails.getSudoersFile();
+			} else {
+				UnixResult result = unixConnection.executeRead(UnixConnector.getCommandGenerator().sudoersFiles());
+				result.checkResult(Operation.GETENET, "Reading permissions failed", LOG);
+				sudoersFile = new SudoersFile(getFileOutput(result.getOutput()));
+			}
+		}
+		return sudoersFile;
+	}
+
+	private void fillGroupHandler(final List<GroupRow> allRows)
 			throws IOException, InterruptedException, JSchException {
+		List<GroupRow> groupRows = page(allRows);
 		if (groupRows == null || groupRows.isEmpty()) {
 			throw new ConnectException("No results found");
 		}
+		readPrimaryMembers();
 		for (Iterator<GroupRow> it = groupRows.iterator(); it.hasNext();) {
-			ConnectorObjectBuilder bld = new ConnectorObjectBuilder();
-			GroupRow groupRow = it.next();
-			if (StringUtil.isNotEmpty(groupRow.getGroupname()) && StringUtil.isNotBlank(groupRow.getGroupname())) {
-				bld.setName(groupRow.getGroupname());
-				bld.setUid(groupRow.getGroupname());
-			} else {
-				bld.setUid("_W_R_O_N_G_");
-				bld.setName("_W_R_O_N_G_");
+			if (!handleGroup(it.next())) {
+				return;
 			}
-			bld.addAttribute(AttributeBuilder.build(SchemaGroupAttribute.GID.getName(),
-					CollectionUtil.newSet(groupRow.getGroupIdentifier())));
+		}
+	}
 
-			String userPermissions;
+	/**
+	 * @return false if the handler does not want any further objects
+	 */
+	private boolean handleGroup(final GroupRow groupRow) throws IOException, InterruptedException, JSchException {
+		return handler.handle(buildGroup(groupRow));
+	}
+
+	private ConnectorObject buildGroup(final GroupRow groupRow)
+			throws IOException, InterruptedException, JSchException {
+		ConnectorObjectBuilder bld = new ConnectorObjectBuilder();
+		bld.setObjectClass(ObjectClass.GROUP);
+		if (StringUtil.isNotEmpty(groupRow.getGroupname()) && StringUtil.isNotBlank(groupRow.getGroupname())) {
+			bld.setName(groupRow.getGroupname());
+			bld.setUid(groupRow.getGroupname());
+		} else {
+			bld.setUid("_W_R_O_N_G_");
+			bld.setName("_W_R_O_N_G_");
+		}
+		bld.addAttribute(AttributeBuilder.build(SchemaGroupAttribute.GID.getName(),
+				CollectionUtil.newSet(groupRow.getGroupIdentifier())));
+		if (enrichment.isMembers()) {
+			bld.addAttribute(AttributeBuilder.build(SchemaGroupAttribute.MEMBERS.getName(),
+					GroupMembership.getMembers(groupRow, primaryMembers)));
+		}
 
-			userPermissions = unixConnection
-					.executeRead(UnixConnector.getCommandGenerator().groupPermissions(groupRow.getGroupname()))
-					.getOutput();
+		if (enrichment.isPermissions()) {
+			String userPermissions = getGroupPermissions(groupRow.getGroupname());
 
 			if (StringUtil.isNotBlank(userPermissions)) {
 				String evaluated = EvaluateCommandsResultOutput.evaluatePermissions("%" + groupRow.getGroupname(),
 						userPermissions);
 				LOG.ok("Evaluated permissions: {0}", evaluated);
-				if (!evaluated.contains("No such file or directory")) {
-					bld.addAttribute(SchemaGroupAttribute.PERMISSIONS.getName(), evaluated);
-				} else {
-					LOG.ok("No permissions for group {0}", groupRow.getGroupname());
-				}
-
+				bld.addAttribute(SchemaGroupAttribute.PERMISSIONS.getName(), evaluated);
 			}
-
-			handler.handle(bld.build());
 		}
 
+		return bld.build();
 	}
 }
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.connid.bundles.unix.UnixConfiguration;
+import org.connid.bundles.unix.UnixConnection;
 import org.connid.bundles.unix.commands.General;
 import org.connid.bundles.unix.commands.GroupAdd;
 import org.connid.bundles.unix.commands.GroupDel;
@@ -57,22 +58,41 @@ public class CommandGenerator {
         return commandToExecute.toString();
     }
 
-    public String searchAllUser(OperationOptions options) {
+    public String searchAllUser(OperationOptions options, String filter) {
         StringBuilder commandToExecute = new StringBuilder();
         if (!unixConfiguration.isRoot()) {
             Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
             commandToExecute.append(sudoCommand.sudo());
         }
-        return commandToExecute.append(General.getentPasswdFile(options)).toString();
+        return commandToExecute.append(General.getentPasswdFile(options, filter)).toString();
     }
     
-    public String searchAllGroups(OperationOptions options) {
+    public String searchAllUsersWithDetails(OperationOptions options, String filter, boolean shadow,
+            boolean groups, boolean sudoers) {
         StringBuilder commandToExecute = new StringBuilder();
         if (!unixConfiguration.isRoot()) {
             Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
             commandToExecute.append(sudoCommand.sudo());
         }
-        return commandToExecute.append(General.getentGroupFile(options)).toString();
+        return commandToExecute.append(General.getentUserDetails(options, filter, shadow, groups, sudoers)).toString();
+    }
+
+    public String syncSnapshot(final String expectedChecksums) {
+        StringBuilder commandToExecute = new StringBuilder();
+        if (!unixConfiguration.isRoot()) {
+            Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
+            commandToExecute.append(sudoCommand.sudo());
+        }
+        return commandToExecute.append(General.syncSnapshot(expectedChecksums)).toString();
+    }
+
+    public String searchAllGroups(OperationOptions options, String filter) {
+        StringBuilder commandToExecute = new StringBuilder();
+        if (!unixConfiguration.isRoot()) {
+            Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
+            commandToExecute.append(sudoCommand.sudo());
+        }
+        return commandToExecute.append(General.getentGroupFile(options, filter)).toString();
     }
 
     public String groupExists(final String groupname) {
@@ -93,25 +113,38 @@ public class CommandGenerator {
         }
         return commandToExecute.append(General.searchUserStatusIntoShadowFile(username)).toString();
     }
-    
-    public String userPermissions(final String username) {
-    	StringBuilder commandToExecute = new StringBuilder();
-    	if (!unixConfiguration.isRoot()){
-    		Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
-    		commandToExecute.append(sudoCommand.sudo());
-    	}
-    	
-    	return commandToExecute.append(General.getUserPermissions(username)).toString();
+
+    public String allUsersStatus() {
+        StringBuilder commandToExecute = new StringBuilder();
+        if (!unixConfiguration.isRoot()) {
+            Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
+            commandToExecute.append(sudoCommand.sudo());
+        }
+        return commandToExecute.append(General.getentShadow()).toString();
     }
     
-    public String groupPermissions(final String username) {
+    /**
+     * Runs the commands as one script, without a sudo prefix of its own, every command carries the one it needs.
+     */
+    public String batch(final List<String> commands) {
+        return General.batchScript(commands);
+    }
+
+    /**
+     * Runs the steps of one object as one script, like {@link #batch} every step carries its own sudo prefix.
+     */
+    public String plan(final List<String> steps, final int inputStep) {
+        return General.planScript(steps, inputStep);
+    }
+
+    public String sudoersFiles() {
     	StringBuilder commandToExecute = new StringBuilder();
     	if (!unixConfiguration.isRoot()){
     		Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
     		commandToExecute.append(sudoCommand.sudo());
     	}
     	
-    	return commandToExecute.append(General.getGroupPermissions(username)).toString();
+    	return commandToExecute.append(General.sudoersFiles()).toString();
     }
     
     public String buildRemoveFromGroupsCommand(final String username, final List<Object> values){
@@ -143,17 +176,18 @@ public class CommandGenerator {
         return commandToExecute.toString();
     }
     
-    public String setPassword(String username, String password){
-    	 StringBuilder commandToExecute = new StringBuilder();
-    	 if (!unixConfiguration.isRoot()) {
-             Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
-             commandToExecute.append(sudoCommand.sudo());
-         }
-    	Passwd passwd = new Passwd();
-    	commandToExecute.append(passwd.setPassword(username, password));
-    	return commandToExecute.toString();
+    /**
+     * Sets the passwords of the users listed on the standard input, see {@link UnixConnection#executeWithInput}.
+     */
+    public String setPasswords() {
+        StringBuilder commandToExecute = new StringBuilder();
+        if (!unixConfiguration.isRoot()) {
+            Sudo sudoCommand = new Sudo(unixConfiguration.getSudoPassword());
+            commandToExecute.append(sudoCommand.sudo());
+        }
+        return commandToExecute.append(new Passwd().setPasswords()).toString();
     }
-    
+
     public String resetPassword(String username){
    	 StringBuilder commandToExecute = new StringBuilder();
    	 if (!unixConfiguration.isRoot()) {
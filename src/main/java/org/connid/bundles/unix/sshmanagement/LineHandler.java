@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.sshmanagement;
+
+import java.io.IOException;
+
+/**
+ * Receives the output of a command line by line while it is still being read.
+ */
+public interface LineHandler {
+
+    /**
+     * @return false to stop reading, the rest of the output is dropped
+     */
+    boolean handle(String line) throws IOException;
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.sshmanagement;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+/**
+ * Threads reading command output, shared by all connections in the JVM. Idle reader threads are reused, and the read
+ * timeout is enforced by a scheduler that cancels the reader instead of every caller waiting with a timeout.
+ */
+public final class ReadOutputExecutor {
+
+    private static final Log LOG = Log.getLog(ReadOutputExecutor.class);
+
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(
+            new DaemonThreadFactory("unix-connector-reader-"));
+
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1,
+            new DaemonThreadFactory("unix-connector-read-timeout-"));
+
+    static {
+        // most reads finish in time, do not keep their cancelled timeouts queued until they would have fired
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+
+    private ReadOutputExecutor() {
+    }
+
+    public static <T> T read(final Callable<T> reader, final long timeout) {
+        final Future<T> future = READERS.submit(reader);
+        ScheduledFuture<?> timeoutTask = TIMEOUTS.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (future.cancel(true)) {
+                    LOG.ok("Reading output timed out after {0}ms", timeout);
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        try {
+            return future.get();
+        } catch (CancellationException ex) {
+            throw new OperationTimeoutException("Reading output timed out after " + timeout + "ms");
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new OperationTimeoutException(ex);
+        } catch (ExecutionException ex) {
+            throw new OperationTimeoutException(ex);
+        } finally {
+            timeoutTask.cancel(false);
+        }
+    }
+
+    /**
+     * Runs a reader that lives as long as its channel, like the one demultiplexing a {@link ShellChannel}.
+     */
+    public static void start(final Runnable reader) {
+        READERS.execute(reader);
+    }
+
+    /**
+     * Runs a task that itself waits for command output, like the lookups enriching one search result. The caller
+     * bounds how many it submits at a time.
+     */
+    public static <T> Future<T> submit(final Callable<T> task) {
+        return READERS.submit(task);
+    }
+
+    public static ScheduledFuture<?> schedule(final Runnable timeoutTask, final long timeout) {
+        return TIMEOUTS.schedule(timeoutTask, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -16,12 +16,17 @@
 package org.connid.bundles.unix.sshmanagement;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
 
 import org.connid.bundles.unix.UnixResult;
 import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
 //import org.omg.CosNaming.NamingContextExtPackage.StringNameHelper;
 
 import com.jcraft.jsch.ChannelExec;
@@ -30,16 +35,36 @@ public class ReadOutputThread implements Callable<UnixResult> {
 
     private static final Log LOG = Log.getLog(ReadOutputThread.class);
     private static String PASSWD_PROMPT = "[sudo] password for";
+    private static final long EXIT_STATUS_POLL_INTERVAL = 10;
+    /**
+     * Lines kept of a streamed output, as error message in case the command fails.
+     */
+    private static final int STREAMED_TAIL_LINES = 10;
     private InputStream fromServer;
     private InputStream errorStream;
     private ChannelExec execChannel;
     private boolean isRead;
+    private LineHandler lineHandler;
+    private volatile long lastRead = System.currentTimeMillis();
+    /**
+     * Whether the line handler is working on a line, the time it takes is not time without output.
+     */
+    private volatile boolean handling = false;
 
     public ReadOutputThread(InputStream fromServer, InputStream errorStream, ChannelExec execChannel, boolean isRead) {
+        this(fromServer, errorStream, execChannel, isRead, null);
+    }
+
+    /**
+     * @param lineHandler receives the lines instead of the result, null to collect them in the result
+     */
+    public ReadOutputThread(InputStream fromServer, InputStream errorStream, ChannelExec execChannel, boolean isRead,
+            LineHandler lineHandler) {
         this.fromServer = fromServer;
         this.errorStream = errorStream;
         this.execChannel = execChannel;
         this.isRead = isRead;
+        this.lineHandler = lineHandler;
     }
 
     @Override
@@ -50,32 +75,47 @@ public class ReadOutputThread implements Callable<UnixResult> {
         StringBuilder buffer = new StringBuilder();
         LOG.ok("Input stream, available {0}", fromServer.available());
 
-        while (true) {
-            while (fromServer.available() > 0) {
-                while ((line = br.readLine()) != null) {
-                    if (isRead) {
-                        if (line.contains("Could not chdir to home directory")) {
-                            continue;
-                        }
-                    }
-                    if (line.contains(PASSWD_PROMPT)) {
-                        line = trimLine(line);
-
-                    }
-                    LOG.ok("Reading line: {0}", line);
-                    buffer.append(line).append("\n");
-                }
+        Deque<String> tail = new ArrayDeque<String>(STREAMED_TAIL_LINES);
+
+        // readLine blocks until the next line arrives and returns null as soon as the channel reaches EOF
+        while ((line = br.readLine()) != null) {
+            lastRead = System.currentTimeMillis();
+            line = filterLine(line, isRead);
+            if (line == null) {
+                continue;
             }
-            if (execChannel.isClosed()) {
-                if(fromServer.available() > 0) continue;
-                LOG.ok("Channel for {1} closed: {0}", new Object[]{execChannel.isClosed(), execChannel.getSession().getHost()});
-                LOG.ok("exit-status: {0}", execChannel.getExitStatus());
-                break;
+            if (lineHandler != null) {
+                if (tail.size() == STREAMED_TAIL_LINES) {
+                    tail.removeFirst();
+                }
+                tail.addLast(line);
+                handling = true;
+                boolean more;
+                try {
+                    more = lineHandler.handle(line);
+                } finally {
+                    lastRead = System.currentTimeMillis();
+                    handling = false;
+                }
+                if (!more) {
+                    LOG.ok("Line handler stopped reading from {0}", execChannel.getSession().getHost());
+                    return new UnixResult(0, "", "");
+                }
+                continue;
             }
+            LOG.ok("Reading line: {0}", line);
+            buffer.append(line).append("\n");
+        }
+
+        waitForExitStatus();
+        LOG.ok("Channel for {1} closed: {0}", new Object[]{execChannel.isClosed(), execChannel.getSession().getHost()});
+        LOG.ok("exit-status: {0}", execChannel.getExitStatus());
 
-            try{
-                Thread.sleep(1000);
-            }catch(Exception ee){}
+        if (lineHandler != null) {
+            for (String tailLine : tail) {
+                buffer.append(tailLine).append("\n");
+            }
+            return new UnixResult(execChannel.getExitStatus(), buffer.toString(), "");
         }
 
         LOG.ok("buffer {0}", buffer.toString());
@@ -84,7 +124,112 @@ public class ReadOutputThread implements Callable<UnixResult> {
 
     }
 
-    private String trimLine(String line) {
+    /**
+     * Reads in the calling thread, so that the line handler runs there as well. The timeout applies to the time
+     * without any output, a long listing that keeps arriving is not cut off.
+     */
+    public UnixResult stream(final long timeout) throws Exception {
+        IdleTimeout idleTimeout = new IdleTimeout(timeout);
+        idleTimeout.start();
+        try {
+            UnixResult result = call();
+            if (idleTimeout.isExpired()) {
+                throw new OperationTimeoutException("No output for " + timeout + "ms");
+            }
+            return result;
+        } catch (IOException e) {
+            if (idleTimeout.isExpired()) {
+                throw new OperationTimeoutException("No output for " + timeout + "ms");
+            }
+            throw e;
+        } finally {
+            idleTimeout.cancel();
+        }
+    }
+
+    /**
+     * The exit status is sent by the server right after EOF, so it is usually already there when the output has been
+     * read. Until then poll with a short interval.
+     */
+    private void waitForExitStatus() throws InterruptedException {
+        while (execChannel.getExitStatus() == -1 && !execChannel.isClosed()) {
+            Thread.sleep(EXIT_STATUS_POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Closes the channel once nothing has been read for the timeout, which ends the blocked read.
+     */
+    private class IdleTimeout implements Runnable {
+
+        private final long timeout;
+
+        private ScheduledFuture<?> task = null;
+
+        private boolean cancelled = false;
+
+        private boolean expired = false;
+
+        IdleTimeout(final long timeout) {
+            this.timeout = timeout;
+        }
+
+        synchronized void start() {
+            task = ReadOutputExecutor.schedule(this, timeout);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (handling) {
+                    task = ReadOutputExecutor.schedule(this, timeout);
+                    return;
+                }
+                long idle = System.currentTimeMillis() - lastRead;
+                if (idle < timeout) {
+                    task = ReadOutputExecutor.schedule(this, timeout - idle);
+                    return;
+                }
+                expired = true;
+            }
+            LOG.ok("No output for {0}ms, closing channel", timeout);
+            execChannel.disconnect();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+        synchronized boolean isExpired() {
+            return expired;
+        }
+    }
+
+    /**
+     * Drops the noise ssh and sudo mix into the command output.
+     *
+     * @return the line to keep, null if it has to be skipped
+     */
+    static String filterLine(String line, boolean isRead) {
+        if (isRead) {
+            if (line.contains("Could not chdir to home directory")) {
+                return null;
+            }
+        }
+        if (line.contains(PASSWD_PROMPT)) {
+            line = trimLine(line);
+
+        }
+        return line;
+    }
+
+    private static String trimLine(String line) {
 
         String[] lineParts = line.split(":");
 
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.sshmanagement;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.connid.bundles.unix.UnixConfiguration;
+import org.connid.bundles.unix.utilities.Constants;
+import org.connid.bundles.unix.utilities.Utilities;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConfigurationException;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * Bounded pool of connected SSH sessions to one host. Pools are shared by all connector instances with an equal
+ * {@link UnixConfiguration} and the same pool settings, so warm sessions survive the connector instances that opened
+ * them.
+ */
+public class SessionPool {
+
+    private static final Log LOG = Log.getLog(SessionPool.class);
+
+    private static final Map<PoolKey, SessionPool> POOLS = new HashMap<PoolKey, SessionPool>();
+
+    private final PoolKey key;
+
+    private final UnixConfiguration unixConfiguration;
+
+    private final Deque<PooledSession> idleSessions = new ArrayDeque<PooledSession>();
+
+    private int openSessions = 0;
+
+    private int users = 0;
+
+    private boolean closed = false;
+
+    private SessionPool(final PoolKey key, final UnixConfiguration unixConfiguration) {
+        this.key = key;
+        this.unixConfiguration = unixConfiguration;
+    }
+
+    public static SessionPool acquire(final UnixConfiguration unixConfiguration) {
+        PoolKey key = new PoolKey(unixConfiguration);
+        synchronized (POOLS) {
+            SessionPool pool = POOLS.get(key);
+            if (pool == null) {
+                pool = new SessionPool(key, unixConfiguration);
+                POOLS.put(key, pool);
+                LOG.ok("Created session pool for {0}", unixConfiguration);
+            }
+            pool.users++;
+            return pool;
+        }
+    }
+
+    /**
+     * Closes the pool once the last connection using it has released it.
+     */
+    public static void release(final SessionPool pool) {
+        synchronized (POOLS) {
+            pool.users--;
+            if (pool.users > 0) {
+                return;
+            }
+            POOLS.remove(pool.key);
+        }
+        pool.close();
+    }
+
+    public Session borrow() {
+        long deadline = System.currentTimeMillis() + key.sshConnectionTimeout;
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new ConnectionBrokenException("Session pool for " + unixConfiguration + " is closed");
+                }
+                evictIdleSessions();
+                PooledSession pooled = idleSessions.pollFirst();
+                if (pooled != null) {
+                    if (isHealthy(pooled.session)) {
+                        return pooled.session;
+                    }
+                    destroy(pooled.session);
+                    continue;
+                }
+                if (openSessions < key.sessionPoolSize) {
+                    openSessions++;
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new ConnectionBrokenException("No SSH session to " + unixConfiguration
+                            + " became available in " + key.sshConnectionTimeout + "ms");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ConnectionBrokenException(e);
+                }
+            }
+        }
+
+        try {
+            return createSession();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                openSessions--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    public synchronized void giveBack(final Session session) {
+        if (session == null) {
+            return;
+        }
+        if (closed || !session.isConnected()) {
+            destroy(session);
+        } else {
+            idleSessions.addFirst(new PooledSession(session));
+        }
+        notifyAll();
+    }
+
+    /**
+     * Drops a borrowed session that turned out to be broken.
+     */
+    public synchronized void invalidate(final Session session) {
+        if (session == null) {
+            return;
+        }
+        destroy(session);
+        notifyAll();
+    }
+
+    /**
+     * Opens a session that is not counted against the pool size, for a channel that stays open as long as its
+     * connection. The caller disconnects it.
+     */
+    public Session openDedicatedSession() {
+        return createSession();
+    }
+
+    private synchronized void close() {
+        closed = true;
+        for (PooledSession pooled : idleSessions) {
+            destroy(pooled.session);
+        }
+        idleSessions.clear();
+        notifyAll();
+        LOG.ok("Closed session pool for {0}", unixConfiguration);
+    }
+
+    private void evictIdleSessions() {
+        long now = System.currentTimeMillis();
+        for (Iterator<PooledSession> it = idleSessions.iterator(); it.hasNext();) {
+            PooledSession pooled = it.next();
+            if (now - pooled.returned > key.sessionIdleTimeout) {
+                it.remove();
+                LOG.ok("Evicting idle session to {0}", unixConfiguration);
+                destroy(pooled.session);
+            }
+        }
+    }
+
+    private boolean isHealthy(final Session session) {
+        if (!session.isConnected()) {
+            return false;
+        }
+        try {
+            session.sendKeepAliveMsg();
+            return true;
+        } catch (Exception e) {
+            LOG.ok("Session to {0} failed health check: {1}", unixConfiguration, e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(final Session session) {
+        openSessions--;
+        if (session.isConnected()) {
+            session.disconnect();
+        }
+    }
+
+    private Session createSession() {
+        LOG.ok("Session initialization started");
+        JSch jSch = new JSch();
+        Session session;
+        try {
+            session = jSch.getSession(unixConfiguration.getAdmin(), unixConfiguration.getHostname(),
+                    unixConfiguration.getPort());
+        } catch (JSchException ex) {
+            throw new ConfigurationException(ex.getMessage(), ex);
+        }
+        session.setPassword(Utilities.getPlainPassword(unixConfiguration.getPassword()));
+        session.setConfig(Constants.STRICT_HOST_KEY_CHECKING, "no");
+        try {
+            session.connect(key.sshConnectionTimeout);
+        } catch (JSchException ex) {
+            throw new ConnectionBrokenException(ex.getMessage(), ex);
+        }
+        LOG.ok("Session initialization finished {0}", session.isConnected());
+        return session;
+    }
+
+    /**
+     * The configuration equality covers host, port, admin and password only. The settings the pool itself reads are
+     * added, a configuration with other limits gets a pool of its own. The pool reads the limits from its key.
+     */
+    private static final class PoolKey {
+
+        private final UnixConfiguration unixConfiguration;
+
+        private final int sessionPoolSize;
+
+        private final long sessionIdleTimeout;
+
+        private final int sshConnectionTimeout;
+
+        PoolKey(final UnixConfiguration unixConfiguration) {
+            this.unixConfiguration = unixConfiguration;
+            this.sessionPoolSize = unixConfiguration.getSessionPoolSize();
+            this.sessionIdleTimeout = unixConfiguration.getSessionIdleTimeout();
+            this.sshConnectionTimeout = unixConfiguration.getSshConnectionTimeout();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) obj;
+            return unixConfiguration.equals(other.unixConfiguration) && sessionPoolSize == other.sessionPoolSize
+                    && sessionIdleTimeout == other.sessionIdleTimeout
+                    && sshConnectionTimeout == other.sshConnectionTimeout;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = unixConfiguration.hashCode();
+            result = 31 * result + sessionPoolSize;
+            result = 31 * result + (int) (sessionIdleTimeout ^ (sessionIdleTimeout >>> 32));
+            result = 31 * result + sshConnectionTimeout;
+            return result;
+        }
+    }
+
+    private static class PooledSession {
+
+        private final Session session;
+
+        private final long returned = System.currentTimeMillis();
+
+        PooledSession(final Session session) {
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.sshmanagement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+
+import org.connid.bundles.unix.UnixResult;
+import org.connid.bundles.unix.utilities.Constants;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * A long lived shell that commands are written into, instead of opening an exec channel for every command. Each
+ * command is framed by a begin and an end line carrying its sequence number, the end line also carries the exit
+ * status. Callers can write their commands without waiting for the ones before, the shell runs them in order and a
+ * single reader hands every output back to the caller waiting for it.
+ */
+public class ShellChannel {
+
+    private static final Log LOG = Log.getLog(ShellChannel.class);
+
+    /**
+     * A plain POSIX shell, whatever the login shell of the admin user is, so that the framing works the same on every
+     * host and no prompt or message of the day gets in the way.
+     */
+    private static final String SHELL_COMMAND = "/bin/sh";
+
+    private final Session session;
+
+    private final ChannelExec channel;
+
+    private final OutputStream toShell;
+
+    private final BufferedReader fromShell;
+
+    private final String beginMarker;
+
+    private final String endMarker;
+
+    private final Queue<PendingCommand> pending = new ConcurrentLinkedQueue<PendingCommand>();
+
+    private long sequence = 0;
+
+    private volatile boolean open = true;
+
+    public ShellChannel(final Session session, final int connectTimeout) throws JSchException, IOException {
+        this.session = session;
+        // a random token, so that no command output can be taken for a marker
+        String token = Long.toHexString(new SecureRandom().nextLong());
+        beginMarker = Constants.SECTION_MARKER + " begin " + token + " ";
+        endMarker = Constants.SECTION_MARKER + " end " + token + " ";
+
+        channel = (ChannelExec) session.openChannel("exec");
+        // with a pty every command would be echoed back
+        channel.setPty(false);
+        channel.setCommand(SHELL_COMMAND);
+        fromShell = new BufferedReader(new InputStreamReader(channel.getInputStream()));
+        toShell = channel.getOutputStream();
+        channel.connect(connectTimeout);
+        LOG.ok("Shell channel opened on {0}", session.getHost());
+
+        ReadOutputExecutor.start(new Runnable() {
+
+            @Override
+            public void run() {
+                readResponses();
+            }
+        });
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public UnixResult execute(final String command, final boolean isRead, final long timeout) {
+        final PendingCommand pendingCommand;
+        synchronized (toShell) {
+            if (!open) {
+                throw new ConnectionBrokenException("Shell channel to " + session.getHost() + " is closed");
+            }
+            pendingCommand = new PendingCommand(++sequence, isRead);
+            pending.add(pendingCommand);
+            LOG.ok("Command to execute: {0}", command);
+            try {
+                toShell.write(frame(pendingCommand.id, command).getBytes());
+                toShell.flush();
+            } catch (IOException e) {
+                close();
+                throw new ConnectionBrokenException(e.getMessage(), e);
+            }
+        }
+
+        ScheduledFuture<?> timeoutTask = ReadOutputExecutor.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                // the shell is still busy with the command, every command after it would time out as well, so it
+                // is closed before the caller is woken up and can send its next command
+                boolean wasOpen = markClosed();
+                if (pendingCommand.fail(new OperationTimeoutException(
+                        "Reading output timed out after " + timeout + "ms"))) {
+                    LOG.ok("Reading output timed out after {0}ms, closing shell channel", timeout);
+                }
+                if (wasOpen) {
+                    shutdown();
+                }
+            }
+        }, timeout);
+
+        try {
+            return pendingCommand.await();
+        } finally {
+            timeoutTask.cancel(false);
+        }
+    }
+
+    /**
+     * The command runs in a subshell, so that exit and cd do not leak into the next command, with its input detached
+     * from the script the shell is reading.
+     */
+    private String frame(final long id, final String command) {
+        return "echo '" + beginMarker + id + "'\n"
+                + "( " + command + "\n"
+                + ") </dev/null 2>&1\n"
+                + "echo \"" + endMarker + id + " $?\"\n";
+    }
+
+    private void readResponses() {
+        PendingCommand current = null;
+        try {
+            String line;
+            while ((line = fromShell.readLine()) != null) {
+                int end = line.indexOf(endMarker);
+                if (end >= 0) {
+                    if (current != null) {
+                        // output without a trailing newline ends up on the line of the end marker
+                        if (end > 0) {
+                            current.append(line.substring(0, end));
+                        }
+                        String[] idAndStatus = line.substring(end + endMarker.length()).trim().split(" ");
+                        current.complete(Integer.parseInt(idAndStatus[1]));
+                        pending.remove(current);
+                        current = null;
+                    }
+                } else if (line.startsWith(beginMarker)) {
+                    current = find(Long.parseLong(line.substring(beginMarker.length()).trim()));
+                } else if (current != null) {
+                    current.append(line);
+                } else {
+                    LOG.ok("Discarding shell output outside of a command: {0}", line);
+                }
+            }
+            LOG.ok("Shell channel to {0} reached EOF", session.getHost());
+        } catch (IOException e) {
+            LOG.ok("Reading from shell channel to {0} failed: {1}", session.getHost(), e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.error(e, "Unexpected output from shell channel to {0}", session.getHost());
+        } finally {
+            close();
+        }
+    }
+
+    private PendingCommand find(final long id) {
+        for (PendingCommand pendingCommand : pending) {
+            if (pendingCommand.id == id) {
+                return pendingCommand;
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        if (markClosed()) {
+            shutdown();
+        }
+    }
+
+    private synchronized boolean markClosed() {
+        boolean wasOpen = open;
+        open = false;
+        return wasOpen;
+    }
+
+    private void shutdown() {
+        channel.disconnect();
+        session.disconnect();
+        PendingCommand pendingCommand;
+        while ((pendingCommand = pending.poll()) != null) {
+            pendingCommand.fail(new ConnectionBrokenException("Shell channel to " + session.getHost()
+                    + " closed before the command finished"));
+        }
+        LOG.ok("Shell channel to {0} closed", session.getHost());
+    }
+
+    private static class PendingCommand {
+
+        private final long id;
+
+        private final boolean isRead;
+
+        private final StringBuilder output = new StringBuilder();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private UnixResult result;
+
+        private RuntimeException failure;
+
+        PendingCommand(final long id, final boolean isRead) {
+            this.id = id;
+            this.isRead = isRead;
+        }
+
+        void append(final String line) {
+            String filtered = ReadOutputThread.filterLine(line, isRead);
+            if (filtered != null) {
+                output.append(filtered).append("\n");
+            }
+        }
+
+        synchronized void complete(final int exitStatus) {
+            if (done.getCount() > 0) {
+                result = new UnixResult(exitStatus, output.toString(), output.toString());
+                done.countDown();
+            }
+        }
+
+        synchronized boolean fail(final RuntimeException e) {
+            if (done.getCount() == 0) {
+                return false;
+            }
+            failure = e;
+            done.countDown();
+            return true;
+        }
+
+        UnixResult await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OperationTimeoutException(e);
+            }
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return result;
+            }
+        }
+    }
+}
@@ -25,4 +25,28 @@ public class Constants {
 
     public static final String STRICT_HOST_KEY_CHECKING = "StrictHostKeyChecking";
 
+    public static final String SECTION_MARKER = "@@UNIX_CONNECTOR@@";
+
+    public static final String PASSWD_SECTION = "passwd";
+
+    public static final String SHADOW_SECTION = "shadow";
+
+    public static final String GROUP_SECTION = "group";
+
+    public static final String SUDOERS_SECTION = "sudoers";
+
+    public static final String FILE_SECTION = "file";
+
+    public static final String CHECKSUMS_SECTION = "checksums";
+
+    public static final String BEGIN_SECTION = "begin";
+
+    public static final String END_SECTION = "end";
+
+    public static final String INPUT_SECTION = "input";
+
+    public static final String TERMINAL_INPUT = "tty";
+
+    public static final String SUDOERS_DIR = "/etc/sudoers.d/";
+
 }
@@ -17,8 +17,13 @@ package org.connid.bundles.unix.utilities;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.connid.bundles.unix.files.ColonFields;
 import org.connid.bundles.unix.files.GroupRow;
 import org.connid.bundles.unix.files.GroupRowElements;
 import org.connid.bundles.unix.files.PasswdRow;
@@ -31,6 +36,8 @@ public class EvaluateCommandsResultOutput {
     private static String PASSWD_PROMPT = "[sudo] password for";
     private static final Log LOG = Log.getLog(EvaluateCommandsResultOutput.class);
 
+    private static final Pattern CHPASSWD_LINE = Pattern.compile("\\bline (\\d+)\\b");
+
     public static boolean evaluateUserOrGroupExists(
             final String commandResult) {
         return !commandResult.isEmpty();
@@ -38,61 +45,14 @@ public class EvaluateCommandsResultOutput {
 
     public static PasswdRow toPasswdRow(
             final String commandResult) {
-        String[] userValues = commandResult.split(":", 7);
-        PasswdRow passwdRow = new PasswdRow();
-        if (userValues.length == PasswdRowElements.values().length) {
-            passwdRow.setUsername(userValues[
-                    PasswdRowElements.USERNAME.getCode()]);
-            passwdRow.setPasswordValidator(userValues[
-                    PasswdRowElements.PASSWORD_VALIDATOR.getCode()]);
-            passwdRow.setUserIdentifier(userValues[
-                    PasswdRowElements.USER_IDENTIFIER.getCode()]);
-            passwdRow.setGroupIdentifier(userValues[
-                    PasswdRowElements.GROUP_IDENTIFIER.getCode()]);
-            passwdRow.setComment(userValues[
-                    PasswdRowElements.COMMENT.getCode()]);
-            passwdRow.setHomeDirectory(userValues[
-                    PasswdRowElements.HOME_DIRECTORY.getCode()]);
-            passwdRow.setShell(userValues[
-                    PasswdRowElements.SHELL.getCode()]);
-        }
-        return passwdRow;
+        ColonFields fields = ColonFields.parse(commandResult, PasswdRowElements.values().length);
+        return fields == null ? new PasswdRow() : new PasswdRow(fields);
     }
 
     public static GroupRow toGroupRow(
             final String commandResult) {
-
-        String[] userValues;
-        // TODO test and remove
-//        if (commandResult != null && commandResult.contains(PASSWD_PROMPT)) {
-//            String[] tmpUserValues = commandResult.split(":");
-//            userValues = new String[4];
-//            for (int a = 0; a < tmpUserValues.length; a++) {
-//                if (a == 0) {
-//                } else {
-//                    if (a != 1) {
-//                        userValues[a - 1] = tmpUserValues[a] != null ? tmpUserValues[a] : "";
-//                    } else {
-//                        userValues[a - 1] = tmpUserValues[a].trim();
-//                    }
-//                }
-//            }
-//        } else {
-
-            userValues = commandResult.split(":", 4);
-//        }
-
-        GroupRow groupRow = new GroupRow();
-        if (userValues.length == GroupRowElements.values().length) {
-            groupRow.setGroupname(userValues[
-                    GroupRowElements.GROUPNAME.getCode()]);
-            groupRow.setPasswordValidator(userValues[
-                    GroupRowElements.PASSWORD_VALIDATOR.getCode()]);
-            groupRow.setGroupIdentifier(userValues[
-                    GroupRowElements.GROUP_IDENTIFIER.getCode()]);
-
-        }
-        return groupRow;
+        ColonFields fields = ColonFields.parse(commandResult, GroupRowElements.values().length);
+        return fields == null ? new GroupRow() : new GroupRow(fields);
     }
 
     public static boolean evaluateUserLockoutStatus(
@@ -131,6 +91,39 @@ public class EvaluateCommandsResultOutput {
 
     }
 
+    /**
+     * Assigns the errors of chpasswd to the users by the line they mention, the lines before such a line belong to
+     * the same user. Errors that mention no line are left out.
+     *
+     * @return the error of every user whose password was not changed
+     */
+    public static Map<String, String> evaluatePasswordFailures(final List<String> usernames,
+            final String commandResult) {
+        Map<String, String> failures = new LinkedHashMap<String, String>();
+        if (StringUtil.isBlank(commandResult)) {
+            return failures;
+        }
+        StringBuilder message = new StringBuilder();
+        for (String line : commandResult.split("\n")) {
+            if (StringUtil.isBlank(line)) {
+                continue;
+            }
+            if (message.length() > 0) {
+                message.append(" ");
+            }
+            message.append(line.trim());
+            Matcher matcher = CHPASSWD_LINE.matcher(line);
+            if (matcher.find()) {
+                int position = Integer.parseInt(matcher.group(1)) - 1;
+                if (position >= 0 && position < usernames.size()) {
+                    failures.put(usernames.get(position), message.toString());
+                }
+                message.setLength(0);
+            }
+        }
+        return failures;
+    }
+
     public static List<String> evaluateUserGroups(String commandResult) {
         if (StringUtil.isNotBlank(commandResult)) {
             String results = StringUtil.stripNewlines(commandResult);
@@ -138,7 +131,7 @@ public class EvaluateCommandsResultOutput {
             if (values != null && values.length != 0) {
                 List<String> groups = new ArrayList<String>();
                 for (int i = 0; i < values.length; i++) {
-                    groups.add(values[i]);
+                    groups.add(ValuePool.intern(values[i]));
                 }
                 return groups;
             }
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.utilities;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.SyncToken;
+
+/**
+ * What the last sync has seen: the checksums of the files and a hash of every account and group. It travels as the
+ * sync token, deflated and base64 encoded.
+ */
+public class SyncState {
+
+    private static final String VERSION = "1";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String CHECKSUMS = "c";
+
+    private static final String ACCOUNT = "a";
+
+    private static final String GROUP = "g";
+
+    private String checksums = null;
+
+    private final Map<String, String> accounts = new LinkedHashMap<String, String>();
+
+    private final Map<String, String> groups = new LinkedHashMap<String, String>();
+
+    public SyncState(final String checksums) {
+        this.checksums = checksums;
+    }
+
+    /**
+     * @return the state of the token, an empty one for no token
+     */
+    public static SyncState decode(final SyncToken token) {
+        if (token == null || !(token.getValue() instanceof String)) {
+            return new SyncState(null);
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new InflaterInputStream(
+                    new ByteArrayInputStream(Base64.getDecoder().decode((String) token.getValue()))), UTF_8));
+            if (!VERSION.equals(reader.readLine())) {
+                return new SyncState(null);
+            }
+            SyncState state = new SyncState(null);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split("\t", 3);
+                if (CHECKSUMS.equals(values[0]) && values.length == 2 && values[1].matches("[0-9 ]*")) {
+                    // only digits, the checksums are put into the next script
+                    state.checksums = values[1];
+                } else if (ACCOUNT.equals(values[0]) && values.length == 3) {
+                    state.accounts.put(values[1], values[2]);
+                } else if (GROUP.equals(values[0]) && values.length == 3) {
+                    state.groups.put(values[1], values[2]);
+                }
+            }
+            return state;
+        } catch (IOException e) {
+            throw new ConnectorException("Invalid sync token: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new ConnectorException("Invalid sync token: " + e.getMessage(), e);
+        }
+    }
+
+    public SyncToken encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            Writer writer = new OutputStreamWriter(new DeflaterOutputStream(bytes), UTF_8);
+            writer.write(VERSION + "\n");
+            if (checksums != null) {
+                writer.write(CHECKSUMS + "\t" + checksums + "\n");
+            }
+            for (Map.Entry<String, String> account : accounts.entrySet()) {
+                writer.write(ACCOUNT + "\t" + account.getKey() + "\t" + account.getValue() + "\n");
+            }
+            for (Map.Entry<String, String> group : groups.entrySet()) {
+                writer.write(GROUP + "\t" + group.getKey() + "\t" + group.getValue() + "\n");
+            }
+            writer.close();
+        } catch (IOException e) {
+            throw new ConnectorException(e.getMessage(), e);
+        }
+        return new SyncToken(Base64.getEncoder().encodeToString(bytes.toByteArray()));
+    }
+
+    public String getChecksums() {
+        return checksums;
+    }
+
+    public Map<String, String> getHashes(final ObjectClass objectClass) {
+        return ObjectClass.GROUP.equals(objectClass) ? groups : accounts;
+    }
+
+    /**
+     * Hashes the attributes of the object, in the order of their names. Half of an MD5 is plenty to notice a change
+     * and keeps the token small.
+     */
+    public static String hash(final ConnectorObject object) {
+        List<Attribute> attributes = new ArrayList<Attribute>(object.getAttributes());
+        Collections.sort(attributes, new Comparator<Attribute>() {
+
+            @Override
+            public int compare(final Attribute first, final Attribute second) {
+                return first.getName().compareTo(second.getName());
+            }
+        });
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ConnectorException(e.getMessage(), e);
+        }
+        for (Attribute attribute : attributes) {
+            digest.update((attribute.getName() + "=" + attribute.getValue() + "\n").getBytes(UTF_8));
+        }
+        StringBuilder hash = new StringBuilder();
+        byte[] bytes = digest.digest();
+        for (int i = 0; i < bytes.length / 2; i++) {
+            hash.append(String.format("%02x", bytes[i]));
+        }
+        return hash.toString();
+    }
+}
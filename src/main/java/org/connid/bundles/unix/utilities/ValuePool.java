@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix.utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeBuilder;
+
+/**
+ * One shared instance of the values almost every row repeats, like the shells, the group names and the status
+ * attributes. Both pools are bounded, once full the oldest value is dropped, so a field with a value per user can
+ * only cost the pooling and never fill the heap.
+ */
+public final class ValuePool {
+
+    private static final int MAX_VALUES = 4096;
+
+    private static final Map<String, String> STRINGS = new Pool<String>();
+
+    private static final Map<String, Attribute> ATTRIBUTES = new Pool<Attribute>();
+
+    private ValuePool() {
+    }
+
+    /**
+     * @return the pooled instance equal to the value
+     */
+    public static String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        synchronized (STRINGS) {
+            String pooled = STRINGS.get(value);
+            if (pooled == null) {
+                STRINGS.put(value, value);
+                pooled = value;
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * @return the pooled attribute with the single value, attributes can not be changed once built
+     */
+    public static Attribute attribute(final String name, final Object value) {
+        String key = name + "=" + value;
+        synchronized (ATTRIBUTES) {
+            Attribute pooled = ATTRIBUTES.get(key);
+            if (pooled == null) {
+                pooled = AttributeBuilder.build(name, value);
+                ATTRIBUTES.put(key, pooled);
+            }
+            return pooled;
+        }
+    }
+
+    private static final class Pool<V> extends LinkedHashMap<String, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return size() > MAX_VALUES;
+        }
+    }
+}
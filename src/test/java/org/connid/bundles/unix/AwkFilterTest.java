@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import org.connid.bundles.unix.search.AwkFilter;
+import org.connid.bundles.unix.search.Operand;
+import org.connid.bundles.unix.search.Operator;
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AwkFilterTest {
+
+    @Test
+    public final void compileAccountFilter() {
+        Operand filter = new Operand(Operator.AND,
+                new Operand(Operator.EQ, "shell", "/bin/bash", false),
+                new Operand(Operator.SW, Name.NAME, "svc_", true));
+
+        Assert.assertEquals(AwkFilter.compile(ObjectClass.ACCOUNT, filter).toCommand(),
+                "awk -F: -v v1='/bin/bash' -v v2='svc_' "
+                + "'(tolower($7) == tolower(v1)) && (!(index($1, v2) == 1))'");
+    }
+
+    @Test
+    public final void compileGroupFilter() {
+        Assert.assertEquals(AwkFilter.compile(ObjectClass.GROUP,
+                new Operand(Operator.C, "gid", "10", false)).toCommand(),
+                "awk -F: -v v1='10' 'index($3, v1) > 0'");
+    }
+
+    @Test
+    public final void quoteValues() {
+        Assert.assertEquals(AwkFilter.compile(ObjectClass.ACCOUNT,
+                new Operand(Operator.EQ, "comment", "O'Brien \\", false)).toCommand(),
+                "awk -F: -v v1='O'\\''Brien \\\\' 'tolower($5) == tolower(v1)'");
+    }
+
+    @Test
+    public final void unknownAttribute() {
+        Assert.assertNull(AwkFilter.compile(ObjectClass.ACCOUNT,
+                new Operand(Operator.OR,
+                        new Operand(Operator.EQ, Name.NAME, "root", false),
+                        new Operand(Operator.EQ, "permissions", "ALL", false))));
+    }
+}
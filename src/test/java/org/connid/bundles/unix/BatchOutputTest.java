@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.connid.bundles.unix.files.BatchOutput;
+import org.connid.bundles.unix.utilities.EvaluateCommandsResultOutput;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BatchOutputTest {
+
+    @Test
+    public final void commands() {
+        BatchOutput output = new BatchOutput(Arrays.asList(
+                "@@UNIX_CONNECTOR@@ begin 0",
+                "@@UNIX_CONNECTOR@@ end 0 0",
+                "@@UNIX_CONNECTOR@@ begin 1",
+                "useradd: user 'alice' already exists",
+                "@@UNIX_CONNECTOR@@ end 1 9",
+                "@@UNIX_CONNECTOR@@ begin 2",
+                "",
+                "no newline@@UNIX_CONNECTOR@@ end 2 1",
+                "@@UNIX_CONNECTOR@@ begin 3",
+                "cut off"));
+
+        Assert.assertTrue(output.isFinished(0));
+        Assert.assertEquals(output.getExitStatus(0), 0);
+        Assert.assertEquals(output.getOutput(0), "");
+        Assert.assertEquals(output.getExitStatus(1), 9);
+        Assert.assertEquals(output.getOutput(1), "useradd: user 'alice' already exists");
+        Assert.assertEquals(output.getExitStatus(2), 1);
+        Assert.assertEquals(output.getOutput(2), "no newline");
+        Assert.assertFalse(output.isFinished(3));
+        Assert.assertEquals(output.getExitStatus(3), -1);
+        Assert.assertFalse(output.isFinished(4));
+        Assert.assertEquals(output.getOutput(4), "");
+    }
+
+    @Test
+    public final void passwordFailures() {
+        Map<String, String> failures = EvaluateCommandsResultOutput.evaluatePasswordFailures(
+                Arrays.asList("alice", "nobody", "bob", "carol"),
+                "chpasswd: (user nobody) pam_chauthtok() failed, error:\n"
+                + "Authentication token manipulation error\n"
+                + "chpasswd: (line 2, user nobody) password not changed\n"
+                + "chpasswd: line 4: user 'carol' does not exist\n");
+
+        Assert.assertEquals(failures.keySet(), new LinkedHashSet<String>(Arrays.asList("nobody", "carol")));
+        Assert.assertTrue(failures.get("nobody").startsWith("chpasswd: (user nobody) pam_chauthtok() failed"));
+        Assert.assertTrue(failures.get("nobody").endsWith("password not changed"));
+        Assert.assertEquals(failures.get("carol"), "chpasswd: line 4: user 'carol' does not exist");
+        Assert.assertTrue(EvaluateCommandsResultOutput.evaluatePasswordFailures(
+                Arrays.asList("alice"), "").isEmpty());
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+
+import org.connid.bundles.unix.files.ColonFields;
+import org.connid.bundles.unix.files.PasswdFile;
+import org.connid.bundles.unix.files.PasswdRow;
+import org.identityconnectors.framework.common.objects.Name;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ColonFieldsTest {
+
+    @Test
+    public final void parse() {
+        ColonFields fields = ColonFields.parse("users:x:100:alice,bob:extra", 4);
+        Assert.assertEquals(fields.size(), 4);
+        Assert.assertEquals(fields.get(0), "users");
+        Assert.assertEquals(fields.get(2), "100");
+        Assert.assertEquals(fields.get(3), "alice,bob:extra");
+        Assert.assertEquals(ColonFields.parse("wheel:x:10:", 4).get(3), "");
+        Assert.assertNull(ColonFields.parse("broken line", 4));
+
+        PasswdRow row = new PasswdFile(Arrays.asList("svc_app:x:1001:1001::/home/svc_app:/bin/bash"))
+                .searchRowByAttribute(Name.NAME, "svc_app", false).get(0);
+        Assert.assertEquals(row.getComment(), "");
+        Assert.assertEquals(row.getShell(), "/bin/bash");
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.connid.bundles.unix.files.GroupFile;
+import org.connid.bundles.unix.files.GroupRow;
+import org.identityconnectors.framework.common.objects.Name;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class GroupFileTest {
+
+    @Test
+    public final void duplicates() {
+        GroupFile groupFile = new GroupFile(Arrays.asList("wheel:x:10:", "users:x:100:", "wheel:x:11:"));
+        Assert.assertEquals(groupFile.getDuplicateGroupnames(), Collections.singleton("wheel"));
+        List<GroupRow> gid = groupFile.searchRowByAttribute("gid", "100", false);
+        Assert.assertEquals(gid.size(), 1);
+        Assert.assertEquals(gid.get(0).getGroupname(), "users");
+    }
+
+    @Test
+    public final void prefixAndSuffix() {
+        GroupFile groupFile = new GroupFile(Arrays.asList("wheel:x:10:", "users:x:100:", "www-data:x:33:"));
+        Assert.assertEquals(groupnames(groupFile.searchRowByStartsWithValue(Name.NAME, "w")),
+                Arrays.asList("wheel", "www-data"));
+        Assert.assertEquals(groupnames(groupFile.searchRowByEndsWithValue(Name.NAME, "ers")),
+                Arrays.asList("users"));
+        Assert.assertEquals(groupnames(groupFile.searchRowByContainsValue("gid", "0")),
+                Arrays.asList("wheel", "users"));
+    }
+
+    private List<String> groupnames(final List<GroupRow> groupRows) {
+        List<String> groupnames = new ArrayList<String>();
+        for (GroupRow groupRow : groupRows) {
+            groupnames.add(groupRow.getGroupname());
+        }
+        return groupnames;
+    }
+}
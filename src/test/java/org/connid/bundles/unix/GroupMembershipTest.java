@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.connid.bundles.unix.files.GroupFile;
+import org.connid.bundles.unix.files.GroupMembership;
+import org.connid.bundles.unix.files.PasswdFile;
+import org.connid.bundles.unix.files.PasswdRow;
+import org.identityconnectors.framework.common.objects.Name;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class GroupMembershipTest {
+
+    private static final PasswdFile PASSWD = new PasswdFile(Arrays.asList(
+            "root:x:0:0:root:/root:/bin/bash",
+            "svc_app:x:1001:1001:Service:/home/svc_app:/bin/bash",
+            "toor:x:0:0:root:/root:/bin/sh",
+            "broken line",
+            "Alice:x:1003:100:Alice:/home/alice:/bin/sh"));
+
+    @Test
+    public final void userGroups() {
+        GroupMembership membership = new GroupFile(Arrays.asList(
+                "users:x:100:Alice, svc_app", "wheel:x:10:Alice", "broken line", "staff:x:50:")).getMembership();
+        List<PasswdRow> alice = PASSWD.searchRowByAttribute(Name.NAME, "alice", false);
+        Assert.assertEquals(membership.getUserGroups(alice.get(0)), Arrays.asList("users", "wheel"));
+        Assert.assertTrue(membership.hasGroup("100"));
+        Assert.assertFalse(membership.hasGroup("1001"));
+        // the primary group of svc_app is unknown, only its supplementary one is listed
+        List<PasswdRow> svc = PASSWD.searchRowByAttribute(Name.NAME, "svc_app", false);
+        Assert.assertEquals(membership.getUserGroups(svc.get(0)), Arrays.asList("users"));
+        Assert.assertNull(membership.getUserGroups(PASSWD.searchRowByAttribute(Name.NAME, "root", false).get(0)));
+    }
+
+    @Test
+    public final void members() {
+        GroupFile groupFile = new GroupFile(Arrays.asList("root:x:0:svc_app,root", "staff:x:50:"));
+        Assert.assertEquals(GroupMembership.getMembers(groupFile.getGroupRows().get(0), PASSWD),
+                Arrays.asList("root", "toor", "svc_app"));
+        Assert.assertEquals(GroupMembership.getMembers(groupFile.getGroupRows().get(0), null),
+                Arrays.asList("svc_app", "root"));
+        Assert.assertTrue(GroupMembership.getMembers(groupFile.getGroupRows().get(1), PASSWD).isEmpty());
+    }
+}
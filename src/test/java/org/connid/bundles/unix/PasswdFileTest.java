@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.connid.bundles.unix.files.PasswdFile;
+import org.connid.bundles.unix.files.PasswdRow;
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PasswdFileTest {
+
+    private static final PasswdFile PASSWD = new PasswdFile(Arrays.asList(
+            "root:x:0:0:root:/root:/bin/bash",
+            "svc_app:x:1001:1001:Service:/home/svc_app:/bin/bash",
+            "toor:x:0:0:root:/root:/bin/sh",
+            "broken line",
+            "Alice:x:1003:100:Alice:/home/alice:/bin/sh"));
+
+    @Test
+    public final void equalityIgnoresCase() {
+        Assert.assertEquals(usernames(PASSWD.searchRowByAttribute(Name.NAME, "ALICE", false)),
+                Arrays.asList("Alice"));
+        Assert.assertEquals(usernames(PASSWD.searchRowByAttribute(Uid.NAME, "svc_app", false)),
+                Arrays.asList("svc_app"));
+        Assert.assertEquals(usernames(PASSWD.searchRowByAttribute("shell", "/BIN/SH", false)),
+                Arrays.asList("toor", "Alice"));
+    }
+
+    @Test
+    public final void uidMayRepeat() {
+        Assert.assertEquals(usernames(PASSWD.searchRowByAttribute("uid", "0", false)), Arrays.asList("root", "toor"));
+        Assert.assertTrue(PASSWD.getDuplicateUsernames().isEmpty());
+    }
+
+    @Test
+    public final void not() {
+        Assert.assertEquals(usernames(PASSWD.searchRowByAttribute("homeDir", "/root", true)),
+                Arrays.asList("svc_app", "", "Alice"));
+    }
+
+    @Test
+    public final void unknownAttribute() {
+        Assert.assertTrue(PASSWD.searchRowByAttribute("permissions", "ALL", false).isEmpty());
+        Assert.assertTrue(PASSWD.searchRowByAttribute(Name.NAME, "nobody", false).isEmpty());
+    }
+
+    @Test
+    public final void duplicates() {
+        PasswdFile passwdFile = new PasswdFile(Arrays.asList(
+                "alice:x:1003:100:Alice:/home/alice:/bin/sh",
+                "alice:x:1004:100:Alice again:/home/alice2:/bin/sh"));
+        Assert.assertEquals(passwdFile.getDuplicateUsernames(), Collections.singleton("alice"));
+        Assert.assertEquals(passwdFile.searchRowByAttribute(Name.NAME, "alice", false).size(), 2);
+    }
+
+    @Test
+    public final void startsWith() {
+        PasswdFile passwdFile = new PasswdFile(Arrays.asList(
+                "svc_db:x:1002:1002:Service:/home/svc_db:/sbin/nologin",
+                "app-web:x:1005:1005:App:/home/app-web:/bin/sh",
+                "svc:x:1006:1006:Plain:/home/svc:/bin/sh",
+                "svc_app:x:1001:1001:Service:/home/svc_app:/bin/bash"));
+        Assert.assertEquals(usernames(passwdFile.searchRowByStartsWithValue(Name.NAME, "svc_")),
+                Arrays.asList("svc_db", "svc_app"));
+        Assert.assertEquals(usernames(passwdFile.searchRowByStartsWithValue(Name.NAME, "svc")),
+                Arrays.asList("svc_db", "svc", "svc_app"));
+        Assert.assertEquals(passwdFile.searchRowByStartsWithValue(Name.NAME, "").size(), 4);
+        Assert.assertTrue(passwdFile.searchRowByStartsWithValue(Name.NAME, "SVC").isEmpty());
+        Assert.assertEquals(usernames(passwdFile.searchRowByEndsWithValue("shell", "sh")),
+                Arrays.asList("app-web", "svc", "svc_app"));
+        Assert.assertEquals(usernames(passwdFile.searchRowByContainsValue("homeDir", "_")),
+                Arrays.asList("svc_db", "svc_app"));
+    }
+
+    @Test
+    public final void columns() {
+        PasswdFile passwdFile = new PasswdFile(Arrays.asList(
+                "nobody:x:4294967294:65534:Nobody:/:/sbin/nologin",
+                "padded:*:007::Padded:/home/padded:/bin/sh",
+                "broken line",
+                "svc_app:x:1001:1001:Service:/home/svc_app:/bin/sh"));
+        List<PasswdRow> rows = passwdFile.getPasswdRows();
+        Assert.assertEquals(rows.size(), 4);
+        Assert.assertEquals(rows.get(0).getUserIdentifier(), "4294967294");
+        Assert.assertEquals(rows.get(0).getHomeDirectory(), "/");
+        Assert.assertEquals(rows.get(0).getShell(), "/sbin/nologin");
+        Assert.assertEquals(rows.get(1).getPasswordValidator(), "*");
+        Assert.assertEquals(rows.get(1).getUserIdentifier(), "007");
+        Assert.assertEquals(rows.get(1).getGroupIdentifier(), "");
+        Assert.assertEquals(rows.get(2).getUsername(), "");
+        Assert.assertEquals(rows.get(2).getHomeDirectory(), "");
+        Assert.assertEquals(rows.get(3).getComment(), "Service");
+        Assert.assertEquals(rows.get(3).getHomeDirectory(), "/home/svc_app");
+        Assert.assertEquals(usernames(passwdFile.searchRowByAttribute("uid", "007", false)),
+                Arrays.asList("padded"));
+        Assert.assertEquals(usernames(passwdFile.searchRowByAttribute("shell", "/bin/sh", true)),
+                Arrays.asList("nobody", ""));
+    }
+
+    private List<String> usernames(final List<PasswdRow> passwdRows) {
+        List<String> usernames = new ArrayList<String>();
+        for (PasswdRow passwdRow : passwdRows) {
+            usernames.add(passwdRow.getUsername());
+        }
+        return usernames;
+    }
+}
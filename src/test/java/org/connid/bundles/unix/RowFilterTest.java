@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.connid.bundles.unix.files.GroupFile;
+import org.connid.bundles.unix.files.GroupRow;
+import org.connid.bundles.unix.files.PasswdFile;
+import org.connid.bundles.unix.files.PasswdRow;
+import org.connid.bundles.unix.search.Operand;
+import org.connid.bundles.unix.search.Operator;
+import org.connid.bundles.unix.search.RowFilter;
+import org.identityconnectors.framework.common.objects.Name;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RowFilterTest {
+
+    private static final PasswdFile PASSWD = new PasswdFile(Arrays.asList(
+            "root:x:0:0:root:/root:/bin/bash",
+            "svc_app:x:1001:1001:Service:/home/svc_app:/bin/bash",
+            "svc_db:x:1002:1002:Service:/home/svc_db:/sbin/nologin",
+            "Alice:x:1003:100:Alice:/home/alice:/bin/sh"));
+
+    @Test
+    public final void nestedAndOr() {
+        Operand filter = new Operand(Operator.OR,
+                new Operand(Operator.AND,
+                        new Operand(Operator.EQ, "shell", "/BIN/BASH", false),
+                        new Operand(Operator.SW, Name.NAME, "svc_", false)),
+                new Operand(Operator.EQ, Name.NAME, "alice", false));
+
+        Assert.assertEquals(usernames(RowFilter.forAccounts(filter).filter(PASSWD.getPasswdRows())),
+                Arrays.asList("svc_app", "Alice"));
+    }
+
+    @Test
+    public final void not() {
+        Operand filter = new Operand(Operator.AND,
+                new Operand(Operator.SW, "homeDir", "/home/", false),
+                new Operand(Operator.EW, "shell", "nologin", true));
+
+        Assert.assertEquals(usernames(RowFilter.forAccounts(filter).filter(PASSWD.getPasswdRows())),
+                Arrays.asList("svc_app", "Alice"));
+    }
+
+    @Test
+    public final void unknownAttribute() {
+        Operand filter = new Operand(Operator.OR,
+                new Operand(Operator.EQ, "permissions", "ALL", false),
+                new Operand(Operator.C, "comment", "vic", false));
+
+        Assert.assertEquals(usernames(RowFilter.forAccounts(filter).filter(PASSWD.getPasswdRows())),
+                Arrays.asList("svc_app", "svc_db"));
+    }
+
+    @Test
+    public final void groups() {
+        GroupFile groupFile = new GroupFile(Arrays.asList("root:x:0:", "wheel:x:10:alice", "users:x:100:"));
+        Operand filter = new Operand(Operator.OR,
+                new Operand(Operator.EQ, "gid", "100", false),
+                new Operand(Operator.EW, Name.NAME, "eel", false));
+
+        List<String> groupnames = new ArrayList<String>();
+        for (GroupRow groupRow : RowFilter.forGroups(filter).filter(groupFile.getGroupRows())) {
+            groupnames.add(groupRow.getGroupname());
+        }
+        Assert.assertEquals(groupnames, Arrays.asList("wheel", "users"));
+    }
+
+    private List<String> usernames(final List<PasswdRow> passwdRows) {
+        List<String> usernames = new ArrayList<String>();
+        for (PasswdRow passwdRow : passwdRows) {
+            usernames.add(passwdRow.getUsername());
+        }
+        return usernames;
+    }
+}
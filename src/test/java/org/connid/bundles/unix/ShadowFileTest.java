@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+
+import org.connid.bundles.unix.files.ShadowFile;
+import org.connid.bundles.unix.files.ShadowStatus;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ShadowFileTest {
+
+    @Test
+    public final void status() {
+        ShadowFile shadow = new ShadowFile(Arrays.asList(
+                "alice:$6$hash:19000:0:99999:7:::",
+                "bob:!:19100:0:99999:7::0:",
+                "carol:*::::::x:",
+                "broken:line"));
+
+        Assert.assertEquals(shadow.size(), 3);
+        ShadowStatus alice = shadow.getStatus("alice");
+        Assert.assertFalse(alice.isLocked());
+        Assert.assertEquals(alice.getExpireDay(), ShadowStatus.NO_DAY);
+        Assert.assertEquals(alice.getDisableDate(), 0);
+        ShadowStatus bob = shadow.getStatus("bob");
+        Assert.assertTrue(bob.isLocked());
+        Assert.assertEquals(bob.getLastChangeDay(), 19100);
+        Assert.assertEquals(bob.getExpireDay(), 0);
+        ShadowStatus carol = shadow.getStatus("carol");
+        Assert.assertEquals(carol.getLastChangeDay(), ShadowStatus.NO_DAY);
+        Assert.assertEquals(carol.getExpireDay(), ShadowStatus.NO_DAY);
+        Assert.assertNull(shadow.getStatus("broken"));
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+
+import org.connid.bundles.unix.files.SudoersFile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SudoersFileTest {
+
+    @Test
+    public final void permissions() {
+        SudoersFile sudoers = new SudoersFile(Arrays.asList(
+                "@@UNIX_CONNECTOR@@ file alice_user",
+                "alice ALL=(ALL) ALL",
+                "",
+                "alice ALL=(root) /bin/ls@@UNIX_CONNECTOR@@ file %wheel_group",
+                "%wheel ALL=(ALL) ALL",
+                "@@UNIX_CONNECTOR@@ file README"));
+
+        Assert.assertEquals(sudoers.getUserPermissions("alice"), "alice ALL=(ALL) ALL\nalice ALL=(root) /bin/ls\n");
+        Assert.assertEquals(sudoers.getGroupPermissions("wheel"), "%wheel ALL=(ALL) ALL\n");
+        Assert.assertNull(sudoers.getUserPermissions("bob"));
+        Assert.assertNull(sudoers.getGroupPermissions("README"));
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import org.connid.bundles.unix.utilities.SyncState;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SyncStateTest {
+
+    @Test
+    public final void roundTrip() {
+        SyncState state = new SyncState("123 45 678 9");
+        state.getHashes(ObjectClass.ACCOUNT).put("alice", "0011223344556677");
+        state.getHashes(ObjectClass.GROUP).put("wheel", "8899aabbccddeeff");
+
+        SyncState decoded = SyncState.decode(state.encode());
+        Assert.assertEquals(decoded.getChecksums(), "123 45 678 9");
+        Assert.assertEquals(decoded.getHashes(ObjectClass.ACCOUNT), state.getHashes(ObjectClass.ACCOUNT));
+        Assert.assertEquals(decoded.getHashes(ObjectClass.GROUP), state.getHashes(ObjectClass.GROUP));
+    }
+
+    @Test
+    public final void checksumsAreOnlyDigits() {
+        SyncState decoded = SyncState.decode(new SyncState("1'; rm -rf /; '").encode());
+        Assert.assertNull(decoded.getChecksums());
+    }
+
+    @Test(expectedExceptions = ConnectorException.class)
+    public final void invalidToken() {
+        SyncState.decode(new SyncToken("not a token"));
+    }
+
+    @Test
+    public final void hashIgnoresAttributeOrder() {
+        ConnectorObjectBuilder first = new ConnectorObjectBuilder();
+        first.setUid("alice").setName("alice");
+        first.addAttribute("shell", "/bin/sh").addAttribute("homeDir", "/home/alice");
+        ConnectorObjectBuilder second = new ConnectorObjectBuilder();
+        second.setUid("alice").setName("alice");
+        second.addAttribute("homeDir", "/home/alice").addAttribute("shell", "/bin/sh");
+
+        Assert.assertEquals(SyncState.hash(first.build()), SyncState.hash(second.build()));
+        second.addAttribute("comment", "Alice");
+        Assert.assertNotEquals(SyncState.hash(first.build()), SyncState.hash(second.build()));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.connid.bundles.unix.files.ShadowStatus;
+import org.connid.bundles.unix.files.UserDetailsFile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class UserDetailsFileTest {
+
+    private static final List<String> OUTPUT = Arrays.asList(
+            "@@UNIX_CONNECTOR@@ passwd",
+            "root:x:0:0:root:/root:/bin/bash",
+            "alice:x:1000:1000:Alice:/home/alice:/bin/bash",
+            "bob:x:1001:100::/home/bob:/bin/sh",
+            "@@UNIX_CONNECTOR@@ shadow",
+            "root:*:19000:0:99999:7:::",
+            "alice:!$6$hash:19000:0:99999:7::19500:",
+            "@@UNIX_CONNECTOR@@ group",
+            "root:x:0:",
+            "users:x:100:alice",
+            "alice:x:1000:",
+            "wheel:x:10:alice,bob",
+            "@@UNIX_CONNECTOR@@ sudoers",
+            "@@UNIX_CONNECTOR@@ file alice_user",
+            "alice ALL=(ALL) ALL",
+            "@@UNIX_CONNECTOR@@ file bob_user",
+            "bob ALL=(ALL) NOPASSWD: ALL");
+
+    @Test
+    public final void parseSections() {
+        UserDetailsFile details = new UserDetailsFile(OUTPUT);
+
+        Assert.assertEquals(details.getPasswdFile().getPasswdRows().size(), 3);
+        ShadowStatus status = details.getShadowStatus("alice");
+        Assert.assertTrue(status.isLocked());
+        Assert.assertEquals(status.getLastChangeDay(), 19000);
+        Assert.assertEquals(status.getExpireDay(), 19500);
+        Assert.assertNull(details.getShadowStatus("bob"));
+        Assert.assertEquals(details.getUserPermissions("bob"), "bob ALL=(ALL) NOPASSWD: ALL\n");
+        Assert.assertNull(details.getUserPermissions("root"));
+    }
+
+    @Test
+    public final void invertGroups() {
+        UserDetailsFile details = new UserDetailsFile(OUTPUT);
+
+        Assert.assertEquals(details.getUserGroups("alice"), Arrays.asList("alice", "users", "wheel"));
+        Assert.assertEquals(details.getUserGroups("bob"), Arrays.asList("users", "wheel"));
+        Assert.assertEquals(details.getUserGroups("root"), Arrays.asList("root"));
+    }
+}
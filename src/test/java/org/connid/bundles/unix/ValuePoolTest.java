@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.Arrays;
+
+import org.connid.bundles.unix.files.PasswdFile;
+import org.connid.bundles.unix.utilities.ValuePool;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.OperationalAttributes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ValuePoolTest {
+
+    @Test
+    public final void shared() {
+        String shell = new String("/bin/bash");
+        Assert.assertSame(ValuePool.intern(new String("/bin/bash")), ValuePool.intern(shell));
+        Assert.assertNull(ValuePool.intern(null));
+
+        Attribute enabled = ValuePool.attribute(OperationalAttributes.ENABLE_NAME, true);
+        Assert.assertSame(ValuePool.attribute(OperationalAttributes.ENABLE_NAME, Boolean.TRUE), enabled);
+        Assert.assertEquals(enabled.getValue(), Arrays.asList((Object) Boolean.TRUE));
+        Assert.assertNotSame(ValuePool.attribute(OperationalAttributes.ENABLE_NAME, false), enabled);
+    }
+
+    @Test
+    public final void snapshotsShareShells() {
+        PasswdFile first = new PasswdFile(Arrays.asList("alice:x:1003:100:Alice:/home/alice:/bin/zsh"));
+        PasswdFile second = new PasswdFile(Arrays.asList("bob:x:1004:100:Bob:/home/bob:" + new String("/bin/zsh")));
+        Assert.assertSame(first.getPasswdRows().get(0).getShell(), second.getPasswdRows().get(0).getShell());
+    }
+}
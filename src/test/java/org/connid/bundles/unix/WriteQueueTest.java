@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2011 ConnId (connid-dev@googlegroups.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.connid.bundles.unix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.connid.bundles.unix.methods.WriteQueue;
+import org.identityconnectors.framework.common.exceptions.UnknownUidException;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class WriteQueueTest {
+
+    @Test
+    public final void orderPerObject() throws Exception {
+        WriteQueue queue = new WriteQueue(3);
+        final List<String> done = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Uid>> futures = new ArrayList<Future<Uid>>();
+        for (int i = 0; i < 20; i++) {
+            final String name = "user" + (i % 5);
+            final String write = name + "-" + (i / 5);
+            futures.add(queue.submit(WriteQueue.key(ObjectClass.ACCOUNT, name), new Callable<Uid>() {
+
+                @Override
+                public Uid call() throws InterruptedException {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+                    done.add(write);
+                    return new Uid(name);
+                }
+            }));
+        }
+        queue.flush();
+
+        Assert.assertEquals(queue.getPending(), 0);
+        Assert.assertEquals(done.size(), 20);
+        Assert.assertTrue(maxRunning.get() <= 3, "At most 3 writes at the same time: " + maxRunning.get());
+        for (int user = 0; user < 5; user++) {
+            int last = -1;
+            for (String write : done) {
+                if (write.startsWith("user" + user + "-")) {
+                    int position = Integer.parseInt(write.substring(write.indexOf('-') + 1));
+                    Assert.assertTrue(position > last, "Writes of user" + user + " out of order: " + done);
+                    last = position;
+                }
+            }
+        }
+        for (Future<Uid> future : futures) {
+            Assert.assertTrue(future.isDone());
+        }
+        Assert.assertEquals(futures.get(7).get().getUidValue(), "user2");
+    }
+
+    @Test
+    public final void failureDoesNotStopObject() throws Exception {
+        WriteQueue queue = new WriteQueue(1);
+        String key = WriteQueue.key(ObjectClass.GROUP, "staff");
+        Future<Uid> failed = queue.submit(key, new Callable<Uid>() {
+
+            @Override
+            public Uid call() {
+                throw new UnknownUidException();
+            }
+        });
+        Future<Uid> next = queue.submit(key, new Callable<Uid>() {
+
+            @Override
+            public Uid call() {
+                return new Uid("staff");
+            }
+        });
+
+        Assert.assertEquals(next.get().getUidValue(), "staff");
+        try {
+            failed.get();
+            Assert.fail("The failure must be kept by the future");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof UnknownUidException);
+        }
+    }
+}